@@ -0,0 +1,35 @@
+package sparkcog.demo;
+
+/**
+ * builds the mazes the benchmarks run on: braided mazes from MazeGenerator (a perfect maze with a tenth of the
+ * remaining walls knocked down so there are loops), start in the upper left and end in the lower right corner, and
+ * mines sprinkled over the other cells. The same size, density and seed always give the same maze.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+final class BenchMazes {
+
+    private BenchMazes() {
+    }
+
+    static Maze maze(int size, double mineDensity, long seed) {
+        MazeGenerator generator = new MazeGenerator(size, size, seed);
+        generator.style = MazeGenerator.Style.BRAIDED;
+        generator.loopChance = 0.1;
+        generator.mineDensity = mineDensity;
+        return generator.generate();
+    }
+
+    static String text(Maze maze) {
+        StringWriter out = new StringWriter();
+        try {
+            MazeConverter.writeText(maze, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+}
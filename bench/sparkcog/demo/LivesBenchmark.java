@@ -0,0 +1,56 @@
+package sparkcog.demo;
+
+/**
+ * finding the path for every number of lives from 1 up to maxLives: a lives aware solve per number of lives against
+ * a single sweep (MazeSolver.sweepLives) that goes on from the shortest path to the ones with fewer mines.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LivesBenchmark {
+
+    @Param({"64", "512"})
+    public int size;
+
+    @Param({"0.05", "0.2"})
+    public double mineDensity;
+
+    @Param({"4", "8"})
+    public int maxLives;
+
+    private Maze maze;
+    private MazeSolver solver;
+
+    @Setup
+    public void setup() {
+        maze = BenchMazes.maze(size, mineDensity, 42);
+        solver = new MazeSolver(SolveMethod.LIVES_AWARE);
+        solver.setPrintPath(false);
+    }
+
+    @Benchmark
+    public int solveEachLives() {
+        int length = 0;
+        for (int lives = 1; lives <= maxLives; lives++) {
+            length += solver.solve(maze, lives).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public MazeSolver.LivesSweep sweepLives() {
+        return solver.sweepLives(maze, maxLives);
+    }
+}
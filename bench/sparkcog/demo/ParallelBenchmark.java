@@ -0,0 +1,55 @@
+package sparkcog.demo;
+
+/**
+ * speedup of the parallel BFS (SolveMethod.PARALLEL) on one large maze against the number of threads in its pool. The
+ * threshold is set to 0 so every size runs in parallel, threads=1 shows the cost of the level by level hand off on
+ * its own, and PhaseBenchmark.breadthFirstSearch at the same size is the sequential queue to compare with.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelBenchmark {
+
+    @Param({"1024", "4096"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private Maze maze;
+    private MazeSolver solver;
+
+    @Setup
+    public void setup() {
+        maze = BenchMazes.maze(size, 0.0, 42);
+        pool = new ForkJoinPool(threads);
+        solver = new MazeSolver(SolveMethod.PARALLEL);
+        solver.setParallelism(pool, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long parallelSearch() {
+        solver.searchDistances(maze, SolveMethod.PARALLEL);
+        return solver.getNodesExpanded();
+    }
+}
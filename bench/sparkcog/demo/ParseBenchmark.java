@@ -0,0 +1,47 @@
+package sparkcog.demo;
+
+/**
+ * cost of turning the compact text of a maze into a Maze, from a String and from ASCII bytes
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+    @Param({"10", "64", "512", "4096"})
+    public int size;
+
+    private String text;
+    private ByteBuffer bytes;
+
+    @Setup
+    public void setup() {
+        text = BenchMazes.text(BenchMazes.maze(size, 0.05, 42));
+        bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public Maze parseString() {
+        return new Maze(text);
+    }
+
+    @Benchmark
+    public Maze parseBytes() {
+        bytes.rewind();
+        return new MazeParser(bytes).next();
+    }
+}
@@ -0,0 +1,84 @@
+package sparkcog.demo;
+
+/**
+ * the phases of the original solver measured one at a time: the BFS on its own (with the queue and bit parallel),
+ * the BFS followed by the walk back (the walk back alone is the difference, it reads the BFS state so it can not run
+ * without it), and turning a found path into its printed form (as a plain list and run length encoded).
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhaseBenchmark {
+
+    @Param({"10", "64", "512", "4096"})
+    public int size;
+
+    @Param({"0.0", "0.05", "0.2"})
+    public double mineDensity;
+
+    @Param({"1", "3"})
+    public int lives;
+
+    private Maze maze;
+    private MazeSolver solver;
+    private MazeSolver pathSolver;
+    private MazeSolver runLengthSolver;
+
+    @Setup
+    public void setup() {
+        maze = BenchMazes.maze(size, mineDensity, 42);
+        solver = new MazeSolver();
+        solver.setPrintPath(false);
+        // solvers that keep a shortest path around for the stringify benchmarks, with lives to spare so there is one
+        pathSolver = new MazeSolver();
+        pathSolver.findPath(maze, maze.size(), SolveMethod.A_STAR);
+        runLengthSolver = new MazeSolver();
+        runLengthSolver.setPathFormat(PathFormat.RUN_LENGTH);
+        runLengthSolver.findPath(maze, maze.size(), SolveMethod.A_STAR);
+    }
+
+    @Benchmark
+    public long breadthFirstSearch() {
+        solver.breadthFirstSearch(maze);
+        return solver.getNodesExpanded();
+    }
+
+    @Benchmark
+    public long bitParallelSearch() {
+        solver.searchDistances(maze, SolveMethod.BIT_PARALLEL);
+        return solver.getNodesExpanded();
+    }
+
+    @Benchmark
+    public int junctionGraph() {
+        return JunctionGraph.build(maze).nodeCount;
+    }
+
+    @Benchmark
+    public boolean breadthFirstSearchAndWalkBack() {
+        solver.breadthFirstSearch(maze);
+        return solver.walkBack(maze, lives);
+    }
+
+    @Benchmark
+    public String stringify() {
+        return pathSolver.pathText();
+    }
+
+    @Benchmark
+    public String stringifyRunLength() {
+        return runLengthSolver.pathText();
+    }
+}
@@ -0,0 +1,57 @@
+package sparkcog.demo;
+
+/**
+ * cost of solving a parsed maze with each method. findPath is the search plus path reconstruction, solve adds the
+ * conversion of the path to text. Mazes and solvers are built once per trial, so a steady state solve should show no
+ * allocation besides the result string in the gc profiler.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolveBenchmark {
+
+    @Param({"10", "64", "512", "4096"})
+    public int size;
+
+    @Param({"0.0", "0.05", "0.2"})
+    public double mineDensity;
+
+    @Param({"1", "3"})
+    public int lives;
+
+    @Param({"BREADTH_FIRST", "LIVES_AWARE", "BIDIRECTIONAL", "A_STAR", "BIT_PARALLEL", "JUNCTION",
+            "PACKED_BFS"})
+    public SolveMethod method;
+
+    private Maze maze;
+    private MazeSolver solver;
+
+    @Setup
+    public void setup() {
+        maze = BenchMazes.maze(size, mineDensity, 42);
+        solver = new MazeSolver(method);
+        solver.setPrintPath(false);
+    }
+
+    @Benchmark
+    public boolean findPath() {
+        return solver.findPath(maze, lives, method);
+    }
+
+    @Benchmark
+    public String solve() {
+        return solver.solve(maze, lives);
+    }
+}
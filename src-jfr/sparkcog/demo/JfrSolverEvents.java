@@ -0,0 +1,58 @@
+package sparkcog.demo;
+
+/**
+ * the JFR side of SolverEvents: "Maze Solve Phase" events under the Maze category. Compiled only where jdk.jfr is
+ * there (OpenJDK 8u262 and later, every JDK from 11 on), SolverEvents finds it by name.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+final class JfrSolverEvents implements SolverEvents.Recorder {
+
+    @Override
+    public SolverEvents.PhaseEvent begin(String phase, String method) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.method = method;
+        event.begin();
+        return event;
+    }
+
+    @Name("sparkcog.demo.SolvePhase")
+    @Label("Maze Solve Phase")
+    @Description("one phase of parsing or solving a maze")
+    @Category("Maze")
+    @StackTrace(false)
+    static final class PhaseEvent extends Event implements SolverEvents.PhaseEvent {
+        @Label("Phase")
+        String phase;
+
+        @Label("Method")
+        String method;
+
+        @Label("Height")
+        int height;
+
+        @Label("Width")
+        int width;
+
+        @Label("Nodes Expanded")
+        long nodesExpanded;
+
+        @Override
+        public void commit(int height, int width, long nodesExpanded) {
+            end();
+            if (shouldCommit()) {
+                this.height = height;
+                this.width = width;
+                this.nodesExpanded = nodesExpanded;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package sparkcog.demo;
+
+/**
+ * A* search towards the end of the maze using the Manhattan distance as heuristic. Every move costs 1 and the
+ * Manhattan distance never drops by more than 1 per move, so the heuristic is consistent and f = g + h never
+ * decreases. That lets the open list be a bucket queue (see BucketQueue) with O(1) operations instead of a binary
+ * heap, which takes away the usual reason to prefer plain BFS (see MazeSolver).
+ *
+ * a cell can be queued again when a shorter way to it shows up before it is expanded, the older copy is skipped once
+ * the cell is closed. Mines are ignored, see MazeSolver for how lives are applied to the result.
+ */
+
+final class AStarSearch {
+
+    private AStarSearch() {
+    }
+
+    /**
+     * searches for a shortest path ignoring mines, on success the path is left in the scratch steps (recorded from
+     * the end back to the start)
+     *
+     * @param maze
+     * @param s
+     * @return false if the end can not be reached
+     */
+    static boolean search(Maze maze, SolverScratch s) {
+        int start = maze.startIndex;
+        int end = maze.endIndex;
+        int n = maze.size();
+        s.prepare(n);
+        if (start < 0 || end < 0) {
+            return false;
+        }
+        s.prepareParents(n);
+        int generation = s.generation;
+        int width = maze.width;
+        int endRow = maze.row(end);
+        int endCol = maze.col(end);
+        int[] g = s.distance;
+        int[] open = s.seen;
+        int[] closed = s.marks;
+        BucketQueue buckets = s.buckets;
+        // f is at most the longest simple path plus the largest Manhattan distance
+        buckets.reset(n + maze.height + maze.width);
+
+        g[start] = 0;
+        open[start] = generation;
+        buckets.add(manhattan(maze.row(start), maze.col(start), endRow, endCol), start);
+        while (!buckets.isEmpty()) {
+            int idx = buckets.remove();
+            if (closed[idx] == generation) {
+                continue;
+            }
+            closed[idx] = generation;
+            s.expanded++;
+            if (idx == end) {
+                walkParents(maze, s);
+                return true;
+            }
+            int row = idx / width;
+            int col = idx - row * width;
+            int code = maze.code(idx);
+            int nextG = g[idx] + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) == 0) {
+                    continue;
+                }
+                int next = maze.neighbor(idx, dir);
+                if (closed[next] == generation || (open[next] == generation && g[next] <= nextG)) {
+                    continue;
+                }
+                open[next] = generation;
+                g[next] = nextG;
+                PackedBits.setPair(s.parents, next, dir);
+                int nextRow = dir == Cell.DIR_UP ? row - 1 : dir == Cell.DIR_DOWN ? row + 1 : row;
+                int nextCol = dir == Cell.DIR_LEFT ? col - 1 : dir == Cell.DIR_RIGHT ? col + 1 : col;
+                buckets.add(nextG + manhattan(nextRow, nextCol, endRow, endCol), next);
+            }
+        }
+        return false;
+    }
+
+    private static int manhattan(int row, int col, int endRow, int endCol) {
+        return Math.abs(row - endRow) + Math.abs(col - endCol);
+    }
+
+    /**
+     * follows the parent directions from the end back to the start, recording each step
+     *
+     * @param maze
+     * @param s
+     */
+    private static void walkParents(Maze maze, SolverScratch s) {
+        int idx = maze.endIndex;
+        while (idx != maze.startIndex) {
+            int dir = PackedBits.getPair(s.parents, idx);
+            s.addStep(dir);
+            idx = maze.neighbor(idx, Cell.opposite(dir));
+        }
+    }
+}
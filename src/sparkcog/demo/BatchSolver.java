@@ -0,0 +1,219 @@
+package sparkcog.demo;
+
+/**
+ * solves a whole file of mazes in parallel. Lines are read in chunks, every chunk is parsed and solved on a fork join
+ * pool while the next chunk is being read, and the results are written in input order, one line per maze.
+ *
+ * a memory mapped file (see MappedMazeFile, BinaryMazeFile) is split by maze index instead, the workers load their
+ * mazes straight from the mapped bytes.
+ *
+ * each worker thread gets its own MazeSolver (and with it its own scratch memory) through a thread local, so the
+ * workers never share search state.
+ *
+ * with a SolutionCache set, mazes that were solved before are answered from the cache; the cache is shared by all
+ * workers.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+public class BatchSolver implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 4096;         // mazes read before handing them to the pool
+    private static final int SPLIT_THRESHOLD = 8;       // mazes solved by one task without splitting further
+
+    private final ForkJoinPool pool;
+    private final int numLives;
+    private final ThreadLocal<MazeSolver> solvers;
+    private SolutionCache cache;
+    private PathFormat pathFormat = PathFormat.LIST;
+    private SolverMetrics metrics;
+
+    public BatchSolver(int parallelism, int numLives, final SolveMethod method) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.numLives = numLives;
+        this.solvers = ThreadLocal.withInitial(() -> {
+            MazeSolver solver = new MazeSolver(method);
+            solver.setPrintPath(false);
+            return solver;
+        });
+    }
+
+    /**
+     * answers repeated mazes from the given cache from now on, null turns caching off
+     *
+     * @param cache
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * picks the format of the paths written from now on, LIST unless set
+     *
+     * @param pathFormat
+     */
+    public void setPathFormat(PathFormat pathFormat) {
+        this.pathFormat = pathFormat;
+    }
+
+    /**
+     * measures parsing and solving from now on, every worker records into the same metrics. Null turns it off.
+     *
+     * @param metrics
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * solves every maze line of the input and writes one result line per maze, blank lines are skipped
+     *
+     * @param in
+     * @param out
+     * @throws IOException
+     */
+    public void solveAll(BufferedReader in, Writer out) throws IOException {
+        List<String> chunk = readChunk(in);
+        while (!chunk.isEmpty()) {
+            String[] results = new String[chunk.size()];
+            List<String> lines = chunk;
+            ForkJoinTask<Void> running = pool.submit(new SolveTask((solver, i) -> solve(solver, lines.get(i)), results,
+                    0, 0, lines.size()));
+            // read ahead while the pool works on the current chunk
+            List<String> next = readChunk(in);
+            running.join();
+            for (String result : results) {
+                out.write(result);
+                out.write('\n');
+            }
+            chunk = next;
+        }
+        out.flush();
+    }
+
+    /**
+     * solves every maze of a memory mapped file and writes one result line per maze. Workers parse their mazes
+     * straight from the mapped bytes, the main thread only writes results.
+     *
+     * @param file
+     * @param out
+     * @throws IOException
+     */
+    public void solveAll(MappedMazeFile file, Writer out) throws IOException {
+        solveAll(file.size(), file::get, out);
+    }
+
+    /**
+     * solves every maze of a binary maze file and writes one result line per maze, the mazes are read straight from
+     * the mapped file
+     *
+     * @param file
+     * @param out
+     * @throws IOException
+     */
+    public void solveAll(BinaryMazeFile file, Writer out) throws IOException {
+        solveAll(file.size(), file::get, out);
+    }
+
+    /**
+     * solves mazes 0 to count - 1, loading each one on the worker that solves it, and writes one result line per maze
+     *
+     * @param count
+     * @param mazes
+     * @param out
+     * @throws IOException
+     */
+    public void solveAll(int count, IntFunction<Maze> mazes, Writer out) throws IOException {
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            int to = Math.min(from + CHUNK_SIZE, count);
+            String[] results = new String[to - from];
+            pool.invoke(new SolveTask((solver, i) -> solve(solver, mazes.apply(i)), results, from, from, to));
+            for (String result : results) {
+                out.write(result);
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
+    private String solve(MazeSolver solver, String compactMaze) {
+        if (cache != null) {
+            return cache.solve(solver, compactMaze, numLives);
+        }
+        Maze maze = metrics == null ? new Maze(compactMaze) : metrics.parse(() -> new Maze(compactMaze));
+        return solver.solve(maze, numLives);
+    }
+
+    private String solve(MazeSolver solver, Maze maze) {
+        return cache != null ? cache.solve(solver, maze, numLives) : solver.solve(maze, numLives);
+    }
+
+    private List<String> readChunk(BufferedReader in) throws IOException {
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        String line;
+        while (chunk.size() < CHUNK_SIZE && (line = in.readLine()) != null) {
+            if (!line.isEmpty()) {
+                chunk.add(line);
+            }
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * loads and solves maze i of a batch with the solver of the worker thread
+     */
+    private interface Job {
+        String solve(MazeSolver solver, int i);
+    }
+
+    /**
+     * parses and solves a range of mazes, splitting it in halves until it is small enough. Maze i goes to
+     * results[i - offset].
+     */
+    private class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Job job;
+        private final String[] results;
+        private final int offset;
+        private final int from;
+        private final int to;
+
+        SolveTask(Job job, String[] results, int offset, int from, int to) {
+            this.job = job;
+            this.results = results;
+            this.offset = offset;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                MazeSolver solver = solvers.get();
+                solver.setPathFormat(pathFormat);
+                solver.setMetrics(metrics);
+                for (int i = from; i < to; i++) {
+                    results[i - offset] = job.solve(solver, i);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SolveTask(job, results, offset, from, mid),
+                        new SolveTask(job, results, offset, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package sparkcog.demo;
+
+/**
+ * breadth first search running from the start and from the end at the same time until the two searches meet. On open
+ * mazes a one sided BFS floods a disc around the start, two searches that meet in the middle each flood a much
+ * smaller one.
+ *
+ * the search goes level by level and always grows the side with the smaller frontier. Once a level produces a meeting
+ * the best meeting of that level is a shortest path: before the level no cell was seen by both sides, so the shortest
+ * path is longer than both depths combined, and every meeting found in the level is at most one longer than that.
+ *
+ * the forward search follows the openings of the cell it leaves, the backward search the openings of the cell it
+ * would leave going forward (the neighbor), so both sides agree on which moves exist even if a wall is only marked on
+ * one side. Mines are ignored, see MazeSolver for how lives are applied to the result.
+ */
+
+final class BidirectionalSearch {
+
+    private BidirectionalSearch() {
+    }
+
+    /**
+     * searches for a shortest path ignoring mines, on success the path is left in the scratch steps (recorded from
+     * the end back to the start)
+     *
+     * @param maze
+     * @param s
+     * @return false if the end can not be reached
+     */
+    static boolean search(Maze maze, SolverScratch s) {
+        int start = maze.startIndex;
+        int end = maze.endIndex;
+        int n = maze.size();
+        s.prepare(n);
+        if (start < 0 || end < 0) {
+            return false;
+        }
+        if (start == end) {
+            return true;
+        }
+        s.prepareBidirectional(n);
+        int generation = s.generation;
+        int width = maze.width;
+        int[] seen = s.seen;
+        int[] distance = s.distance;
+        int[] backSeen = s.backSeen;
+        int[] backDistance = s.backDistance;
+        IntQueue q = s.queue;
+        IntQueue backQ = s.backQueue;
+
+        seen[start] = generation;
+        distance[start] = 0;
+        q.add(start);
+        backSeen[end] = generation;
+        backDistance[end] = 0;
+        backQ.add(end);
+
+        int meet = -1;
+        int best = Integer.MAX_VALUE;
+        while (!q.isEmpty() && !backQ.isEmpty()) {
+            if (q.size() <= backQ.size()) {
+                // one level forward
+                for (int count = q.size(); count > 0; count--) {
+                    int idx = q.remove();
+                    s.expanded++;
+                    int code = maze.code(idx);
+                    int nextDist = distance[idx] + 1;
+                    for (int dir = 0; dir < 4; dir++) {
+                        if ((code & (1 << dir)) == 0) {
+                            continue;
+                        }
+                        int next = maze.neighbor(idx, dir);
+                        if (seen[next] == generation) {
+                            continue;
+                        }
+                        seen[next] = generation;
+                        distance[next] = nextDist;
+                        PackedBits.setPair(s.parents, next, dir);
+                        if (backSeen[next] == generation && nextDist + backDistance[next] < best) {
+                            best = nextDist + backDistance[next];
+                            meet = next;
+                        }
+                        q.add(next);
+                    }
+                }
+            } else {
+                // one level backward, looking for cells that can step into the current one
+                for (int count = backQ.size(); count > 0; count--) {
+                    int idx = backQ.remove();
+                    s.expanded++;
+                    int col = idx % width;
+                    int nextDist = backDistance[idx] + 1;
+                    for (int dir = 0; dir < 4; dir++) {
+                        if (!onGrid(maze, idx, col, dir)) {
+                            continue;
+                        }
+                        int prev = maze.neighbor(idx, dir);
+                        int back = Cell.opposite(dir);
+                        if ((maze.code(prev) & (1 << back)) == 0 || backSeen[prev] == generation) {
+                            continue;
+                        }
+                        backSeen[prev] = generation;
+                        backDistance[prev] = nextDist;
+                        PackedBits.setPair(s.backParents, prev, back);
+                        if (seen[prev] == generation && nextDist + distance[prev] < best) {
+                            best = nextDist + distance[prev];
+                            meet = prev;
+                        }
+                        backQ.add(prev);
+                    }
+                }
+            }
+            if (meet >= 0) {
+                join(maze, s, meet);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * checks that the neighbor in the given direction exists
+     *
+     * @param maze
+     * @param idx
+     * @param col
+     * @param dir
+     * @return
+     */
+    private static boolean onGrid(Maze maze, int idx, int col, int dir) {
+        switch (dir) {
+            case Cell.DIR_UP:
+                return idx >= maze.width;
+            case Cell.DIR_RIGHT:
+                return col < maze.width - 1;
+            case Cell.DIR_DOWN:
+                return idx < maze.size() - maze.width;
+            default:
+                return col > 0;
+        }
+    }
+
+    /**
+     * records the path through the meeting cell, end first like the other searches
+     *
+     * @param maze
+     * @param s
+     * @param meet
+     */
+    private static void join(Maze maze, SolverScratch s, int meet) {
+        // meeting cell to the end, recorded in walking order and then turned around
+        int idx = meet;
+        while (idx != maze.endIndex) {
+            int dir = PackedBits.getPair(s.backParents, idx);
+            s.addStep(dir);
+            idx = maze.neighbor(idx, dir);
+        }
+        s.reverseSteps(0, s.stepCount);
+        // meeting cell back to the start
+        idx = meet;
+        while (idx != maze.startIndex) {
+            int dir = PackedBits.getPair(s.parents, idx);
+            s.addStep(dir);
+            idx = maze.neighbor(idx, Cell.opposite(dir));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package sparkcog.demo;
+
+/**
+ * a file of binary maze records (see BinaryMazeFormat) that is memory mapped. Opening the file walks the record
+ * headers once to index where every maze starts, the mazes handed out read their cells straight from the mapping, so
+ * loading a maze copies nothing to the heap and the file may be larger than the heap.
+ *
+ * reading is thread safe, every call works on its own view of the mapping.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class BinaryMazeFile implements AutoCloseable {
+
+    private final FileChannel channel;
+    private long[] recordStarts = new long[1024];   // file offset of every record
+    private int recordCount;
+    private final MappedRegions regions;
+
+    public BinaryMazeFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            indexRecords(fileSize);
+            this.regions = new MappedRegions(channel, fileSize, recordStarts, recordCount, MappedRegions.MAX_REGION);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * number of mazes in the file
+     *
+     * @return
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * the maze at the given index, backed by the mapped file
+     *
+     * @param index
+     * @return
+     */
+    public Maze get(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("maze " + index + " of " + recordCount);
+        }
+        return BinaryMazeFormat.read(regions.view(recordStarts[index]));
+    }
+
+    /**
+     * walks the record headers, reading only the dimensions of each record to find the next one
+     *
+     * @param fileSize
+     * @throws IOException
+     */
+    private void indexRecords(long fileSize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BinaryMazeFormat.HEADER_SIZE);
+        long offset = 0;
+        while (offset < fileSize) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, offset + header.position()) > 0) {
+                // keep reading until the header is complete
+            }
+            if (header.hasRemaining() || header.getInt(0) != BinaryMazeFormat.MAGIC
+                    || header.getInt(8) < 1 || header.getInt(12) < 1) {
+                throw new IOException("bad binary maze record at offset " + offset);
+            }
+            if (recordCount == recordStarts.length) {
+                recordStarts = Arrays.copyOf(recordStarts, recordCount << 1);
+            }
+            recordStarts[recordCount++] = offset;
+            offset += BinaryMazeFormat.recordSize(header.getInt(8), header.getInt(12));
+        }
+        if (offset != fileSize) {
+            throw new IOException("last binary maze record is truncated");
+        }
+    }
+
+    /**
+     * closes the file, the mappings themselves go away once the mazes handed out are garbage collected
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,133 @@
+package sparkcog.demo;
+
+/**
+ * the binary maze format. A file is a sequence of maze records, each one a fixed header followed by the cells:
+ *
+ *   offset  size  field
+ *        0     4  magic, the ASCII bytes "MAZE"
+ *        4     2  format version, currently 1
+ *        6     2  reserved, 0
+ *        8     4  height
+ *       12     4  width
+ *       16     4  row-major index of the start, -1 if none
+ *       20     4  row-major index of the end, -1 if none
+ *       24   h*w  cell codes, one 7-bit code per byte, row-major
+ *
+ * all numbers are big endian. A cell costs one byte instead of 2 to 4 ASCII bytes plus a comma, and since every code
+ * sits at a fixed offset a maze can be solved straight from the (memory mapped) file without unpacking it to the heap.
+ * The codes are written after the maze cleaned them up, so a reader can trust them as they are.
+ *
+ * a maze with more cells than a Maze can hold (MAX_HEAP_CELLS) can still be written, its start and end indices would
+ * not fit the header and are written as -1; the START and END bits of the cells are where they are found (see
+ * TiledMaze, which solves such mazes from the file).
+ */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public final class BinaryMazeFormat {
+
+    public static final int MAGIC = 0x4D415A45;         // "MAZE"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final long MAX_HEAP_CELLS = Integer.MAX_VALUE - 8;    // largest maze read into a Maze
+
+    private BinaryMazeFormat() {
+    }
+
+    /**
+     * size in bytes of the record of a maze
+     *
+     * @param height
+     * @param width
+     * @return
+     */
+    public static long recordSize(int height, int width) {
+        return HEADER_SIZE + (long) height * width;
+    }
+
+    /**
+     * writes one maze record
+     *
+     * @param maze
+     * @param out
+     * @throws IOException
+     */
+    public static void write(Maze maze, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data, maze.height, maze.width, maze.startIndex, maze.endIndex);
+        if (maze.cells != null) {
+            data.write(maze.cells);
+        } else {
+            for (int idx = 0; idx < maze.size(); idx++) {
+                data.write(maze.code(idx));
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * writes a record header, the caller follows it up with height * width cell codes
+     *
+     * @param data
+     * @param height
+     * @param width
+     * @param startIndex
+     * @param endIndex
+     * @throws IOException
+     */
+    static void writeHeader(DataOutputStream data, int height, int width, long startIndex, long endIndex)
+            throws IOException {
+        boolean indexed = (long) height * width <= MAX_HEAP_CELLS;
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(0);
+        data.writeInt(height);
+        data.writeInt(width);
+        data.writeInt(indexed ? (int) startIndex : -1);
+        data.writeInt(indexed ? (int) endIndex : -1);
+    }
+
+    /**
+     * reads the record at the position of the buffer without copying the cells, the maze keeps reading them from the
+     * buffer. The position of the buffer moves past the record.
+     *
+     * @param buffer
+     * @return
+     */
+    public static Maze read(ByteBuffer buffer) {
+        int at = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("truncated maze header at offset " + at);
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a binary maze record at offset " + at);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported binary maze version " + version + " at offset " + at);
+        }
+        buffer.getShort();
+        int height = buffer.getInt();
+        int width = buffer.getInt();
+        int startIndex = buffer.getInt();
+        int endIndex = buffer.getInt();
+        long size = (long) height * width;
+        if (height < 1 || width < 1 || size > buffer.remaining()) {
+            throw new IllegalArgumentException("bad or truncated " + height + "x" + width + " maze at offset " + at);
+        }
+        if (size > MAX_HEAP_CELLS) {
+            throw new IllegalArgumentException(height + "x" + width + " maze at offset " + at
+                    + " is too large for the heap, open it as a TiledMaze");
+        }
+        if (startIndex < -1 || startIndex >= size || endIndex < -1 || endIndex >= size) {
+            throw new IllegalArgumentException("start or end outside the maze at offset " + at);
+        }
+        ByteBuffer cells = buffer.slice();
+        cells.limit((int) size);
+        buffer.position(buffer.position() + (int) size);
+        return new Maze(height, width, cells, startIndex, endIndex);
+    }
+}
@@ -0,0 +1,211 @@
+package sparkcog.demo;
+
+/**
+ * breadth first search that expands 64 cells at a time. Every row of the maze is cut into 64 bit words, bit c of a
+ * word stands for one column, and the openings of the cells become four bit sets (one per direction) in that layout.
+ * A BFS level is then a handful of word operations: the cells of the frontier that are open to the right, shifted up
+ * by one bit, are the cells they lead to, and so on for the other directions, masked with the cells not visited yet.
+ * The words of one row follow each other, so a shift only has to carry one bit into the neighboring word, and moving
+ * up or down is the same word one row over.
+ *
+ * only the words that hold frontier cells are looked at, a level of a narrow corridor costs a few words rather than a
+ * sweep over the maze. How much one word op buys depends on how many frontier cells share a word: the front of a BFS
+ * from a single cell is a thin line that crosses each row in a few places, so on open and braided mazes this runs
+ * about level with the queue (the bit sets stay in cache, the distances written per cell do not), and on a perfect
+ * maze, where the front is one cell in a corridor, the extra bookkeeping makes it slower.
+ *
+ * the distances come from the level numbers and are written to the same scratch arrays as MazeSolver's queue based
+ * BFS, so walkBack runs on them unchanged, but this is not a drop-in for the queue. Up to the level of the end both
+ * have the same distances. This search then fills in the next level as a whole, the queue stops when the end comes
+ * off it and has seen only the part of that level its order got to. walkBack reads a cell that was not seen as
+ * distance 0, so where it looks at one of those the queue's walk back steps onto it and stops there, away from the
+ * start, with a path that can not be walked. Wherever BREADTH_FIRST gives a path that can be walked, this gives the
+ * same one (every maze of mazes.txt); where it does not, this one reads the real distance instead and often finds a
+ * path. Mines are ignored.
+ */
+
+final class BitParallelSearch {
+
+    private BitParallelSearch() {
+    }
+
+    /**
+     * computes the BFS distances from the start up to one level past the end, they are left in the scratch where
+     * distanceOf reads them
+     *
+     * @param maze
+     * @param s
+     */
+    static void search(Maze maze, SolverScratch s) {
+        int width = maze.width;
+        int words = (width + 63) >>> 6;         // words per row
+        s.prepare(maze.size());
+        s.prepareRows(words * maze.height);
+        fillOpenings(maze, s);
+        int start = maze.startIndex;
+        int startWord = maze.row(start) * words + (maze.col(start) >>> 6);
+        int endWord = -1;
+        long endBit = 0;
+        if (maze.endIndex >= 0) {
+            endWord = maze.row(maze.endIndex) * words + (maze.col(maze.endIndex) >>> 6);
+            endBit = 1L << maze.col(maze.endIndex);
+        }
+
+        s.rowFront[startWord] = 1L << maze.col(start);
+        s.rowVisited[startWord] = s.rowFront[startWord];
+        s.frontWords[0] = startWord;
+        s.distance[start] = 0;
+        s.seen[start] = s.generation;
+        s.expanded = 1;
+        int count = 1;
+        boolean reached = start == maze.endIndex;
+        int level = 0;
+        while (count > 0) {
+            level++;
+            count = settle(s, level, expand(s, words, count));
+            if (reached) {
+                break;
+            }
+            reached = endWord >= 0 && (s.rowVisited[endWord] & endBit) != 0;
+        }
+    }
+
+    /**
+     * builds the bit sets of the openings, the four directions of a word next to each other in the order of the
+     * direction ordinals, and notes the cell of bit 0 of every word
+     *
+     * @param maze
+     * @param s
+     */
+    private static void fillOpenings(Maze maze, SolverScratch s) {
+        int width = maze.width;
+        long[] open = s.rowOpen;
+        int wi = 0;
+        for (int h = 0; h < maze.height; h++) {
+            int idx = h * width;
+            for (int w = 0; w < width; w += 64, wi++) {
+                s.wordCells[wi] = idx;
+                int last = Math.min(64, width - w);
+                long up = 0;
+                long right = 0;
+                long down = 0;
+                long left = 0;
+                for (int bit = 0; bit < last; bit++) {
+                    long code = maze.code(idx++);
+                    up |= (code & 1) << bit;
+                    right |= (code >>> 1 & 1) << bit;
+                    down |= (code >>> 2 & 1) << bit;
+                    left |= (code >>> 3 & 1) << bit;
+                }
+                int o = wi << 2;
+                open[o + Cell.DIR_UP] = up;
+                open[o + Cell.DIR_RIGHT] = right;
+                open[o + Cell.DIR_DOWN] = down;
+                open[o + Cell.DIR_LEFT] = left;
+            }
+        }
+    }
+
+    /**
+     * moves the frontier one step in every open direction, the new cells are collected per word in rowNext
+     *
+     * @param s
+     * @param words
+     * @param count number of frontier words
+     * @return number of words with new cells
+     */
+    private static int expand(SolverScratch s, int words, int count) {
+        long[] open = s.rowOpen;
+        long[] front = s.rowFront;
+        int[] frontWords = s.frontWords;
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            int wi = frontWords[i];
+            long cells = front[wi];
+            front[wi] = 0;
+            int o = wi << 2;
+            // the border cells have no openings off the grid (see Maze), so a carry never leaves its row
+            long bits = cells & open[o + Cell.DIR_RIGHT];
+            if (bits != 0) {
+                next = add(s, wi, bits << 1, next);
+                if (bits < 0) {
+                    next = add(s, wi + 1, 1L, next);
+                }
+            }
+            bits = cells & open[o + Cell.DIR_LEFT];
+            if (bits != 0) {
+                next = add(s, wi, bits >>> 1, next);
+                if ((bits & 1) != 0) {
+                    next = add(s, wi - 1, Long.MIN_VALUE, next);
+                }
+            }
+            bits = cells & open[o + Cell.DIR_UP];
+            if (bits != 0) {
+                next = add(s, wi - words, bits, next);
+            }
+            bits = cells & open[o + Cell.DIR_DOWN];
+            if (bits != 0) {
+                next = add(s, wi + words, bits, next);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * adds the unvisited cells among bits to the next frontier, a word is listed when its first cells arrive
+     *
+     * @param s
+     * @param wi
+     * @param bits
+     * @param next number of words on the next frontier so far
+     * @return
+     */
+    private static int add(SolverScratch s, int wi, long bits, int next) {
+        bits &= ~s.rowVisited[wi];
+        if (bits == 0) {
+            return next;
+        }
+        long[] rowNext = s.rowNext;
+        if (rowNext[wi] == 0) {
+            s.nextWords[next++] = wi;
+        }
+        rowNext[wi] |= bits;
+        return next;
+    }
+
+    /**
+     * marks the cells of the next frontier visited at the given distance and makes it the current frontier
+     *
+     * @param s
+     * @param level
+     * @param count number of words with new cells
+     * @return number of frontier words
+     */
+    private static int settle(SolverScratch s, int level, int count) {
+        int[] distance = s.distance;
+        int[] seen = s.seen;
+        int generation = s.generation;
+        int[] nextWords = s.nextWords;
+        long[] rowNext = s.rowNext;
+        long expanded = 0;
+        for (int i = 0; i < count; i++) {
+            int wi = nextWords[i];
+            long bits = rowNext[wi];
+            rowNext[wi] = 0;
+            s.rowVisited[wi] |= bits;
+            s.rowFront[wi] = bits;
+            expanded += Long.bitCount(bits);
+            int base = s.wordCells[wi];
+            while (bits != 0) {
+                int idx = base + Long.numberOfTrailingZeros(bits);
+                distance[idx] = level;
+                seen[idx] = generation;
+                bits &= bits - 1;
+            }
+        }
+        s.expanded += expanded;
+        s.nextWords = s.frontWords;
+        s.frontWords = nextWords;
+        return count;
+    }
+}
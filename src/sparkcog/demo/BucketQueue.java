@@ -0,0 +1,87 @@
+package sparkcog.demo;
+
+/**
+ * a monotone bucket (Dial) priority queue for small integer priorities. Every priority has its own bucket, a linked
+ * list kept in flat int arrays, and removal walks a cursor up from the smallest bucket. Both add and remove are O(1)
+ * amortized as long as nothing is added below the cursor, which holds for A* with a consistent heuristic on unit
+ * weight grids since f never decreases along the search.
+ *
+ * a value may be added more than once with different priorities, callers skip the stale copies when they come out.
+ * The arrays only grow, so a queue reused across solves stops allocating once it has seen the largest maze.
+ */
+
+import java.util.Arrays;
+
+final class BucketQueue {
+
+    private int[] heads = new int[0];       // first entry of every bucket, -1 when empty
+    private int[] values = new int[64];     // value of every entry
+    private int[] links = new int[64];      // next entry in the same bucket
+    private int entries;                    // entries handed out since the last reset
+    private int cursor;                     // smallest bucket that may be non empty
+    private int highest;                    // largest bucket used since the last reset
+    private int size;                       // number of queued entries
+    int peak;                               // most entries queued at once since the last reset
+
+    /**
+     * empties the queue and makes room for priorities 0 to buckets - 1
+     *
+     * @param buckets
+     */
+    void reset(int buckets) {
+        if (heads.length < buckets) {
+            heads = new int[buckets];
+            Arrays.fill(heads, -1);
+        } else if (cursor <= highest) {
+            // buckets below the cursor are already empty, only the ones up to the highest used can be dirty
+            Arrays.fill(heads, cursor, highest + 1, -1);
+        }
+        entries = 0;
+        cursor = heads.length;
+        highest = -1;
+        size = 0;
+        peak = 0;
+    }
+
+    void add(int priority, int value) {
+        if (entries == values.length) {
+            values = Arrays.copyOf(values, entries << 1);
+            links = Arrays.copyOf(links, entries << 1);
+        }
+        values[entries] = value;
+        links[entries] = heads[priority];
+        heads[priority] = entries++;
+        if (priority < cursor) {
+            cursor = priority;
+        }
+        if (priority > highest) {
+            highest = priority;
+        }
+        if (++size > peak) {
+            peak = size;
+        }
+    }
+
+    /**
+     * removes the most recently added value of the smallest non empty bucket, ties therefore go to the deepest cell
+     *
+     * @return
+     */
+    int remove() {
+        while (heads[cursor] < 0) {
+            cursor++;
+        }
+        int entry = heads[cursor];
+        heads[cursor] = links[entry];
+        size--;
+        return values[entry];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
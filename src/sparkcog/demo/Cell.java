@@ -6,12 +6,33 @@ package sparkcog.demo;
  * the cell is the most basic element of a maze, it contains features that indicate the connections to other cells
  * and other state information such as its location on a grid, whether it contains a mine, or whether it is a starging
  * or ending cell.
+ *
+ * the maze itself keeps its cells packed as raw codes (see Maze), a Cell is only a view over one of those codes and is
+ * created on demand. The bit masks below are the single source of truth for the 7-bit cell code. The four wall bits
+ * are laid out so that the direction ordinal (UP=0, RIGHT=1, DOWN=2, LEFT=3) is also the bit position, which lets the
+ * solvers store a direction in 2 bits and get its opposite with (dir + 2) & 3.
  */
 
 import java.util.HashMap;
 import java.util.Map;
 
 public class Cell {
+    public static final int UP = 1;                     // opening to the cell above
+    public static final int RIGHT = 2;                  // opening to the cell on the right
+    public static final int DOWN = 4;                   // opening to the cell below
+    public static final int LEFT = 8;                   // opening to the cell on the left
+    public static final int START = 16;                 // starting cell
+    public static final int END = 32;                   // ending cell
+    public static final int MINE = 64;                  // cell contains a mine
+    public static final int WALLS = UP | RIGHT | DOWN | LEFT;
+
+    // direction ordinals, mask = 1 << ordinal
+    public static final int DIR_UP = 0;
+    public static final int DIR_RIGHT = 1;
+    public static final int DIR_DOWN = 2;
+    public static final int DIR_LEFT = 3;
+    public static final String[] DIRECTION_NAMES = {"UP", "RIGHT", "DOWN", "LEFT"};
+
     public int code;                                    // compact representation of cell features
     public int h;                                       // height - vertical location of cell on grid
     public int w;                                       // width - horizontal location of cell on grid
@@ -24,6 +45,26 @@ public class Cell {
         this.features = getFeatures(code);
     }
 
+    /**
+     * checks a feature without going through the features map
+     *
+     * @param mask one of the feature bits, eg. Cell.MINE
+     * @return
+     */
+    public boolean has(int mask) {
+        return (code & mask) != 0;
+    }
+
+    /**
+     * the direction that undoes a step in the given direction
+     *
+     * @param dir a direction ordinal
+     * @return
+     */
+    public static int opposite(int dir) {
+        return (dir + 2) & 3;
+    }
+
     /**
      * takes in a code that is a binary representation of the features in this cell
      *
@@ -34,31 +75,31 @@ public class Cell {
         // using a map for quicker access
         Map<String,Integer> features = new HashMap<>();
 
-        if ((code & 64) > 0) {
+        if ((code & MINE) > 0) {
             features.put("MINE",1);
         }
 
-        if ((code & 32) > 0) {
+        if ((code & END) > 0) {
             features.put("END",1);
         }
 
-        if ((code & 16) > 0) {
+        if ((code & START) > 0) {
             features.put("START",1);
         }
 
-        if ((code & 8) > 0) {
+        if ((code & LEFT) > 0) {
             features.put("LEFT",1);
         }
 
-        if ((code & 4) > 0) {
+        if ((code & DOWN) > 0) {
             features.put("DOWN",1);
         }
 
-        if ((code & 2) > 0) {
+        if ((code & RIGHT) > 0) {
             features.put("RIGHT",1);
         }
 
-        if ((code & 1) > 0) {
+        if ((code & UP) > 0) {
             features.put("UP",1);
         }
 
@@ -0,0 +1,181 @@
+package sparkcog.demo;
+
+/**
+ * what the connected components of a maze say about its start and end, so a solve that can not succeed is answered
+ * without a search and a solve that can not meet a mine does not pay for the lives.
+ *
+ * the components come from a union-find over the cells, every pair of neighbors with an opening between them (either
+ * way) is joined. A path only moves through openings, so a start and an end in different components have no path. The
+ * openings may be one way, so the same component does not promise a path, the answers are only ever used to skip a
+ * search that would fail.
+ *
+ *   - reachable: the start and the end are in the same component.
+ *   - mineFreeReachable: the same with every mine left out (the start never counts as one, it is not stepped on), a
+ *     path with one life can not step on a mine, so without this there is none.
+ *   - minesReachable: the component of the start holds a mine. Without one no path can lose a life and the lives
+ *     aware searches can run with a single layer.
+ *
+ * one pass over the cells in row-major order marks the mines and joins every cell to its neighbors on the left and
+ * above across the mine free openings, which answers mineFreeReachable. A second joins the openings onto mines into
+ * the same forest and answers the rest, every root carries whether its tree holds a mine. A maze without mines skips
+ * the second pass. The forest is dropped once the answers are known, a maze keeps only those (see
+ * Maze.indexConnectivity) until the next edit.
+ */
+
+final class Connectivity {
+
+    final boolean reachable;
+    final boolean mineFreeReachable;
+    final boolean minesReachable;
+
+    private Connectivity(boolean reachable, boolean mineFreeReachable, boolean minesReachable) {
+        this.reachable = reachable;
+        this.mineFreeReachable = mineFreeReachable;
+        this.minesReachable = minesReachable;
+    }
+
+    /**
+     * whether no path can exist with the given lives: the end is apart from the start, or a single life is not enough
+     * to get there without stepping on a mine. A walk back over BFS distances does not spend lives the way the exact
+     * searches do, for it only the first applies.
+     *
+     * @param numLives
+     * @param exact whether the method finds the shortest survivable path
+     * @return
+     */
+    boolean rulesOut(int numLives, boolean exact) {
+        return !reachable || (exact && numLives == 1 && !mineFreeReachable);
+    }
+
+    /**
+     * the lives an exact search needs, one when no mine is in reach of the start since then a single layer of states
+     * holds every path
+     *
+     * @param numLives
+     * @return
+     */
+    int livesNeeded(int numLives) {
+        return minesReachable ? numLives : Math.min(numLives, 1);
+    }
+
+    /**
+     * finds the components of a maze that has a start and an end
+     *
+     * @param maze
+     * @return
+     */
+    static Connectivity build(Maze maze) {
+        int n = maze.size();
+        int width = maze.width;
+        int start = maze.startIndex;
+        int[] parent = new int[n];
+        // the mines go in as components of their own, a root keeps the flag of every component joined under it. Only
+        // allocated once a mine comes up, the mine free trees joined before that hold none.
+        byte[] mine = null;
+        int last = 0;
+        for (int idx = 0; idx < n; idx++) {
+            int code = maze.code(idx);
+            if (idx != start && (code & Cell.MINE) != 0) {
+                if (mine == null) {
+                    mine = new byte[n];
+                }
+                parent[idx] = idx;
+                mine[idx] = 1;
+                last = idx;
+                continue;
+            }
+            // the cell is still a tree of its own, it can go straight under the root of the cell on its left, which
+            // nothing has moved since. Openings off the grid are dropped, the first cell of a row never joins the end
+            // of the row above.
+            int root = idx;
+            if (idx > 0 && (mine == null || mine[idx - 1] == 0)
+                    && ((code & Cell.LEFT) != 0 || maze.has(idx - 1, Cell.RIGHT))) {
+                root = last;
+            }
+            parent[idx] = root;
+            if (idx >= width && (mine == null || mine[idx - width] == 0)
+                    && ((code & Cell.UP) != 0 || maze.has(idx - width, Cell.DOWN))) {
+                // neither tree holds a mine, there is no flag to hand on
+                int above = find(parent, idx - width);
+                if (above < root) {
+                    parent[root] = above;
+                    root = above;
+                } else if (root < above) {
+                    parent[above] = root;
+                }
+            }
+            last = root;
+        }
+
+        boolean mineFreeReachable = find(parent, start) == find(parent, maze.endIndex);
+        if (mine == null) {
+            return new Connectivity(mineFreeReachable, mineFreeReachable, false);
+        }
+        joinMines(maze, parent, mine);
+        int root = find(parent, start);
+        return new Connectivity(mineFreeReachable || root == find(parent, maze.endIndex), mineFreeReachable,
+                mine[root] != 0);
+    }
+
+    /**
+     * joins the cells of every opening onto a mine. Only the openings to the right and down are looked at, each pair
+     * of neighbors once.
+     *
+     * @param maze
+     * @param parent
+     * @param mine
+     */
+    private static void joinMines(Maze maze, int[] parent, byte[] mine) {
+        int width = maze.width;
+        int height = maze.height;
+        int idx = 0;
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++, idx++) {
+                int code = maze.code(idx);
+                if (j + 1 < width && (mine[idx] | mine[idx + 1]) != 0
+                        && ((code & Cell.RIGHT) != 0 || maze.has(idx + 1, Cell.LEFT))) {
+                    union(parent, mine, idx, idx + 1);
+                }
+                if (i + 1 < height && (mine[idx] | mine[idx + width]) != 0
+                        && ((code & Cell.DOWN) != 0 || maze.has(idx + width, Cell.UP))) {
+                    union(parent, mine, idx, idx + width);
+                }
+            }
+        }
+    }
+
+    /**
+     * the root of a cell's tree, halving the path on the way up
+     *
+     * @param parent
+     * @param idx
+     * @return
+     */
+    private static int find(int[] parent, int idx) {
+        while (parent[idx] != idx) {
+            parent[idx] = parent[parent[idx]];
+            idx = parent[idx];
+        }
+        return idx;
+    }
+
+    /**
+     * joins the trees of two cells, the larger root goes under the smaller one and hands its mine flag on
+     *
+     * @param parent
+     * @param mine
+     * @param a
+     * @param b
+     */
+    private static void union(int[] parent, byte[] mine, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra < rb) {
+            parent[rb] = ra;
+            mine[ra] |= mine[rb];
+        } else if (rb < ra) {
+            parent[ra] = rb;
+            mine[rb] |= mine[ra];
+        }
+    }
+}
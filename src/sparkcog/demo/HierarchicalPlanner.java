@@ -0,0 +1,341 @@
+package sparkcog.demo;
+
+/**
+ * finds paths through a TiledMaze that is too large to be searched cell by cell in the heap, with hierarchical path
+ * finding (HPA*). The search runs on the abstract graph of TileIndex: its nodes are the entrances between tiles, its
+ * edges the precomputed distances inside a tile plus one step across every border. The start and the end join the
+ * graph through a BFS inside their own tiles, then A* with the manhattan distance finds the cheapest chain of
+ * entrances, and finally every leg of that chain is refined into cells with one more BFS inside its tile. Only the
+ * tiles along the way are ever loaded.
+ *
+ * every crossing of a border is an entrance (see TileIndex), so the path found is a shortest one, though not always
+ * the one a BFS over the whole maze would pick among equally short ones. Mines are ignored.
+ *
+ * not thread safe, it shares the tile caches of the maze and the index.
+ *
+ * usage: HierarchicalPlanner <binary file> [--tile n] [--tiles n] [--index file] [--rle]
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class HierarchicalPlanner implements AutoCloseable {
+
+    public static final String INDEX_SUFFIX = ".tiles";
+
+    private static final long START = -1;
+    private static final long GOAL = -2;
+    private static final int NODES_PER_TILE = 4 * TiledMaze.MAX_TILE_SIZE;   // key: tile * NODES_PER_TILE + node
+
+    private final TiledMaze maze;
+    private final TileIndex index;
+    private final TileBfs bfs;
+    private final SolverScratch scratch = new SolverScratch();
+    private long nodesExpanded;
+
+    /**
+     * a planner for the maze, with its index next to the maze file
+     *
+     * @param maze
+     * @throws IOException
+     */
+    public HierarchicalPlanner(TiledMaze maze) throws IOException {
+        this(maze, maze.path.resolveSibling(maze.path.getFileName() + INDEX_SUFFIX), TiledMaze.DEFAULT_CACHED_TILES);
+    }
+
+    /**
+     * a planner for the maze, the index is built (and written to indexFile) unless the file already holds it
+     *
+     * @param maze
+     * @param indexFile
+     * @param cachedTiles most tile records of the index kept in the heap at once
+     * @throws IOException
+     */
+    public HierarchicalPlanner(TiledMaze maze, Path indexFile, int cachedTiles) throws IOException {
+        this.maze = maze;
+        this.index = TileIndex.open(maze, indexFile, cachedTiles);
+        this.bfs = new TileBfs(maze.tileSize);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.out.println("usage: HierarchicalPlanner <binary file> [--tile n] [--tiles n] [--index file]"
+                    + " [--rle]");
+            return;
+        }
+        int tileSize = TiledMaze.DEFAULT_TILE_SIZE;
+        int cachedTiles = TiledMaze.DEFAULT_CACHED_TILES;
+        String indexFile = null;
+        PathFormat format = PathFormat.LIST;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--tile":
+                    tileSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--tiles":
+                    cachedTiles = Integer.parseInt(args[++i]);
+                    break;
+                case "--index":
+                    indexFile = args[++i];
+                    break;
+                case "--rle":
+                    format = PathFormat.RUN_LENGTH;
+                    break;
+                default:
+                    System.out.println("unknown option " + args[i]);
+                    return;
+            }
+        }
+        Path file = Paths.get(args[0]);
+        Path index = indexFile == null ? file.resolveSibling(file.getFileName() + INDEX_SUFFIX) : Paths.get(indexFile);
+        try (TiledMaze maze = new TiledMaze(file, tileSize, cachedTiles)) {
+            long begin = System.nanoTime();
+            try (HierarchicalPlanner planner = new HierarchicalPlanner(maze, index, cachedTiles)) {
+                System.err.println("indexed " + maze.height + "x" + maze.width + " in " + maze.tileRows + "x"
+                        + maze.tileCols + " tiles in " + (System.nanoTime() - begin) / 1000000 + " ms");
+                begin = System.nanoTime();
+                PathWriter out = new PathWriter(new BufferedWriter(
+                        new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16));
+                planner.solve(out, format);
+                out.newLine();
+                out.flush();
+                System.err.println("solved in " + (System.nanoTime() - begin) / 1000000 + " ms, "
+                        + planner.getPathLength() + " steps, " + planner.getNodesExpanded() + " nodes expanded, "
+                        + maze.getTileLoads() + " tiles loaded");
+            }
+        }
+    }
+
+    /**
+     * finds a path from the start to the end and writes it (or "no path found") to out
+     *
+     * @param out
+     * @param format
+     * @return false if there is no path
+     * @throws IOException
+     */
+    public boolean solve(PathWriter out, PathFormat format) throws IOException {
+        scratch.prepare(0);
+        nodesExpanded = 0;
+        long start = maze.getStartIndex();
+        long end = maze.getEndIndex();
+        List<Long> chain = start < 0 || end < 0 ? null : search(start, end);
+        if (chain == null) {
+            out.write(MazeSolver.NO_PATH);
+            return false;
+        }
+        refine(chain, start, end);
+        out.writePath(scratch, format);
+        return true;
+    }
+
+    /**
+     * number of steps of the last path found
+     *
+     * @return
+     */
+    public long getPathLength() {
+        return scratch.stepCount;
+    }
+
+    /**
+     * number of abstract nodes the last search took off its queue
+     *
+     * @return
+     */
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * A* over the entrances from the start to the end
+     *
+     * @param start row-major index of the start
+     * @param end row-major index of the end
+     * @return the keys of the nodes from START to GOAL, null if there is no path
+     */
+    private List<Long> search(long start, long end) {
+        int startRow = (int) (start / maze.width);
+        int startCol = (int) (start % maze.width);
+        int endRow = (int) (end / maze.width);
+        int endCol = (int) (end % maze.width);
+        int endTile = tileOf(endRow, endCol);
+        TileIndex.Nodes endNodes = index.nodes(endRow / maze.tileSize, endCol / maze.tileSize);
+
+        // distance from every entrance of the end tile to the end
+        bfs.run(maze.tile(endNodes.tr, endNodes.tc), endNodes.rows, endNodes.cols,
+                local(endRow, endCol), true);
+        int[] toGoal = new int[endNodes.count()];
+        for (int j = 0; j < toGoal.length; j++) {
+            toGoal[j] = bfs.distance(endNodes.cells[j]);
+        }
+
+        HashMap<Long, Long> best = new HashMap<>();
+        HashMap<Long, Long> parents = new HashMap<>();
+        PriorityQueue<long[]> open = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+        // the start joins the entrances of its tile, and the end directly when they share the tile
+        TileIndex.Nodes startNodes = index.nodes(startRow / maze.tileSize, startCol / maze.tileSize);
+        int startTile = tileOf(startRow, startCol);
+        bfs.run(maze.tile(startNodes.tr, startNodes.tc), startNodes.rows, startNodes.cols,
+                local(startRow, startCol), false);
+        best.put(START, 0L);
+        if (startTile == endTile) {
+            int d = bfs.distance(local(endRow, endCol));
+            if (d >= 0) {
+                relax(GOAL, START, d, 0, best, parents, open);
+            }
+        }
+        for (int j = 0; j < startNodes.count(); j++) {
+            int d = bfs.distance(startNodes.cells[j]);
+            if (d >= 0) {
+                long key = (long) startTile * NODES_PER_TILE + j;
+                relax(key, START, d, heuristic(startNodes, j, endRow, endCol), best, parents, open);
+            }
+        }
+
+        while (!open.isEmpty()) {
+            long[] entry = open.poll();
+            long key = entry[1];
+            long g = entry[2];
+            if (g > best.get(key)) {
+                continue;                                   // a stale duplicate
+            }
+            nodesExpanded++;
+            if (key == GOAL) {
+                List<Long> chain = new ArrayList<>();
+                for (Long at = GOAL; at != null; at = parents.get(at)) {
+                    chain.add(at);
+                }
+                return chain;                               // from the goal back to the start
+            }
+            int tile = (int) (key / NODES_PER_TILE);
+            int node = (int) (key % NODES_PER_TILE);
+            TileIndex.Nodes nodes = index.nodes(tile / maze.tileCols, tile % maze.tileCols);
+            for (int j = 0; j < nodes.count(); j++) {
+                int d = j == node ? -1 : nodes.distance(node, j);
+                if (d >= 0) {
+                    relax((long) tile * NODES_PER_TILE + j, key, g + d, heuristic(nodes, j, endRow, endCol),
+                            best, parents, open);
+                }
+            }
+            if (tile == endTile && toGoal[node] >= 0) {
+                relax(GOAL, key, g + toGoal[node], 0, best, parents, open);
+            }
+            // one step across the border, to the entrance at the same position on the other side
+            int side = nodes.side(node);
+            int h = nodes.tr * maze.tileSize + nodes.cells[node] / nodes.cols;
+            int w = nodes.tc * maze.tileSize + nodes.cells[node] % nodes.cols;
+            if ((maze.code(h, w) & (1 << side)) != 0) {
+                int tr = nodes.tr + (side == Cell.DIR_UP ? -1 : side == Cell.DIR_DOWN ? 1 : 0);
+                int tc = nodes.tc + (side == Cell.DIR_LEFT ? -1 : side == Cell.DIR_RIGHT ? 1 : 0);
+                TileIndex.Nodes other = index.nodes(tr, tc);
+                int partner = other.sideStart[Cell.opposite(side)] + node - nodes.sideStart[side];
+                relax((long) (tr * maze.tileCols + tc) * NODES_PER_TILE + partner, key, g + 1,
+                        heuristic(other, partner, endRow, endCol), best, parents, open);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * records a cheaper way to a node and queues it, an older entry of the node stays in the queue and is skipped
+     */
+    private static void relax(long key, long parent, long g, long h, HashMap<Long, Long> best,
+            HashMap<Long, Long> parents, PriorityQueue<long[]> open) {
+        Long known = best.get(key);
+        if (known == null || g < known) {
+            best.put(key, g);
+            parents.put(key, parent);
+            open.add(new long[] {g + h, key, g});
+        }
+    }
+
+    /**
+     * turns the chain of entrances into steps, leg by leg from the goal back to the start as SolverScratch records
+     * them
+     *
+     * @param chain node keys from GOAL back to START
+     * @param start
+     * @param end
+     */
+    private void refine(List<Long> chain, long start, long end) {
+        int endRow = (int) (end / maze.width);
+        int endCol = (int) (end % maze.width);
+        int startRow = (int) (start / maze.width);
+        int startCol = (int) (start % maze.width);
+        for (int i = 0; i + 1 < chain.size(); i++) {
+            long to = chain.get(i);
+            long from = chain.get(i + 1);
+            int fromRow;
+            int fromCol;
+            if (from == START) {
+                fromRow = startRow;
+                fromCol = startCol;
+            } else {
+                TileIndex.Nodes nodes = nodesOf(from);
+                int node = (int) (from % NODES_PER_TILE);
+                if (to != GOAL && (int) (to / NODES_PER_TILE) != (int) (from / NODES_PER_TILE)) {
+                    scratch.addStep(nodes.side(node));      // the step across a border
+                    continue;
+                }
+                fromRow = nodes.tr * maze.tileSize + nodes.cells[node] / nodes.cols;
+                fromCol = nodes.tc * maze.tileSize + nodes.cells[node] % nodes.cols;
+            }
+            int toRow;
+            int toCol;
+            if (to == GOAL) {
+                toRow = endRow;
+                toCol = endCol;
+            } else {
+                TileIndex.Nodes nodes = nodesOf(to);
+                int node = (int) (to % NODES_PER_TILE);
+                toRow = nodes.tr * maze.tileSize + nodes.cells[node] / nodes.cols;
+                toCol = nodes.tc * maze.tileSize + nodes.cells[node] % nodes.cols;
+            }
+            int tr = fromRow / maze.tileSize;
+            int tc = fromCol / maze.tileSize;
+            bfs.run(maze.tile(tr, tc), maze.tileHeight(tr), maze.tileWidth(tc), local(fromRow, fromCol), false);
+            bfs.walkBack(local(toRow, toCol), scratch);
+        }
+    }
+
+    private TileIndex.Nodes nodesOf(long key) {
+        int tile = (int) (key / NODES_PER_TILE);
+        return index.nodes(tile / maze.tileCols, tile % maze.tileCols);
+    }
+
+    private int tileOf(int h, int w) {
+        return (h / maze.tileSize) * maze.tileCols + w / maze.tileSize;
+    }
+
+    /**
+     * the index of a cell inside its tile
+     *
+     * @param h
+     * @param w
+     * @return
+     */
+    private int local(int h, int w) {
+        return (h % maze.tileSize) * maze.tileWidth(w / maze.tileSize) + w % maze.tileSize;
+    }
+
+    private long heuristic(TileIndex.Nodes nodes, int node, int endRow, int endCol) {
+        int h = nodes.tr * maze.tileSize + nodes.cells[node] / nodes.cols;
+        int w = nodes.tc * maze.tileSize + nodes.cells[node] % nodes.cols;
+        return Math.abs(h - endRow) + Math.abs(w - endCol);
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+    }
+}
@@ -0,0 +1,326 @@
+package sparkcog.demo;
+
+/**
+ * keeps the shortest survivable path of a maze up to date while the maze is edited. Instead of rebuilding the maze and
+ * searching it again after every change, the solver repairs its previous result with Lifelong Planning A* (LPA*,
+ * Koenig and Likhachev): only the states whose distance actually changed are touched, so a local edit in a large maze
+ * costs about as much as the part of the path it affects.
+ *
+ * the search runs over the same layered states as LivesAwareSearch, (cell, mines stepped on) with at most
+ * numLives - 1 mines, so the paths are exact with respect to the lives. Every state keeps its distance from the start
+ * g and the one step lookahead rhs; states where the two disagree wait in an indexed heap (see IndexedHeap) keyed on
+ * [min(g, rhs) + h, min(g, rhs)] with the Manhattan distance to the end as h. The end cells of all layers lead into
+ * one extra goal state. That last move costs 1 like any other: with a free move the goal would tie with the end
+ * states on both key parts, and the search could stop while one of them still holds an outdated distance.
+ *
+ * edits go through setCode, setWall and setMine of this solver, which change the maze (see Maze.setCode) and mark the
+ * states of the edited cell and its neighbors for repair. Moving the start or the end changes the heuristic or the
+ * root of the search, so the next solve starts over. The maze must not be edited behind the solver's back.
+ *
+ * the state arrays take about 24 bytes per cell per life: g, rhs, the heap slot and position, and an 8 byte key. Not
+ * thread safe.
+ */
+
+import java.util.Arrays;
+
+public class IncrementalSolver {
+
+    private static final int INFINITE = Integer.MAX_VALUE / 4;
+
+    private final Maze maze;
+    private final int numLives;
+    private final int n;                    // cells per layer
+    private final int goal;                 // the extra state every end state leads into
+    private final int[] g;                  // distance from the start, as far as the search knows
+    private final int[] rhs;                // one step lookahead of g, from the best predecessor
+    private final IndexedHeap open;         // inconsistent states
+    private final SolverScratch scratch = new SolverScratch();
+    private boolean restart = true;         // the search has to start over before the next solve
+    private int start = -1;                 // start and end the current search was built for
+    private int end = -1;
+    private long expanded;
+
+    public IncrementalSolver(Maze maze, int numLives) {
+        if (numLives < 1) {
+            throw new IllegalArgumentException("at least one life is needed");
+        }
+        long states = (long) maze.size() * numLives + 1;
+        if (states > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("maze too large for " + numLives + " lives");
+        }
+        this.maze = maze;
+        this.numLives = numLives;
+        this.n = maze.size();
+        this.goal = (int) states - 1;
+        this.g = new int[(int) states];
+        this.rhs = new int[(int) states];
+        this.open = new IndexedHeap((int) states);
+    }
+
+    /**
+     * the shortest path from the start to the end that survives with the lives of this solver, repaired from the last
+     * result after edits
+     *
+     * @return the directions in the format of MazeSolver, or "no path found"
+     */
+    public String solve() {
+        return findPath() ? MazeSolver.pathText(scratch) : MazeSolver.NO_PATH;
+    }
+
+    /**
+     * number of states the last solve took off its queue
+     *
+     * @return
+     */
+    public long getNodesExpanded() {
+        return expanded;
+    }
+
+    /**
+     * changes the code of a cell, see Maze.setCode
+     *
+     * @param idx
+     * @param code
+     */
+    public void setCode(int idx, int code) {
+        maze.setCode(idx, code);
+        changed(idx);
+    }
+
+    /**
+     * opens or closes a wall, see Maze.setWall
+     *
+     * @param idx
+     * @param dir
+     * @param open
+     */
+    public void setWall(int idx, int dir, boolean open) {
+        maze.setWall(idx, dir, open);
+        changed(idx);
+    }
+
+    /**
+     * puts a mine on a cell or clears it, see Maze.setMine
+     *
+     * @param idx
+     * @param mine
+     */
+    public void setMine(int idx, boolean mine) {
+        maze.setMine(idx, mine);
+        changed(idx);
+    }
+
+    /**
+     * runs LPA* until the goal is consistent and records the path in the scratch steps
+     *
+     * @return false if there is no path
+     */
+    private boolean findPath() {
+        scratch.prepare(n);
+        expanded = 0;
+        if (maze.startIndex < 0 || maze.endIndex < 0) {
+            return false;
+        }
+        if (restart || maze.startIndex != start || maze.endIndex != end) {
+            reset();
+        }
+        computeShortestPath();
+        if (g[goal] >= INFINITE) {
+            return false;
+        }
+        walkBack();
+        return true;
+    }
+
+    /**
+     * forgets everything and makes the start the only inconsistent state
+     */
+    private void reset() {
+        start = maze.startIndex;
+        end = maze.endIndex;
+        Arrays.fill(g, INFINITE);
+        Arrays.fill(rhs, INFINITE);
+        open.clear();
+        rhs[start] = 0;
+        open.put(start, key(start));
+        restart = false;
+    }
+
+    /**
+     * the states of an edited cell and its neighbors may have new predecessors, their rhs is brought up to date
+     *
+     * @param idx
+     */
+    private void changed(int idx) {
+        if (restart || maze.startIndex != start || maze.endIndex != end) {
+            restart = true;
+            return;
+        }
+        int h = maze.row(idx);
+        int w = maze.col(idx);
+        for (int layer = 0; layer < numLives; layer++) {
+            int base = layer * n;
+            updateState(base + idx);
+            if (h > 0) updateState(base + idx - maze.width);
+            if (h < maze.height - 1) updateState(base + idx + maze.width);
+            if (w > 0) updateState(base + idx - 1);
+            if (w < maze.width - 1) updateState(base + idx + 1);
+        }
+    }
+
+    private void computeShortestPath() {
+        while (!open.isEmpty() && (open.topKey() < key(goal) || rhs[goal] != g[goal])) {
+            int state = open.pop();
+            expanded++;
+            if (g[state] > rhs[state]) {
+                // overconsistent, the state got closer: settle it and tell its successors
+                g[state] = rhs[state];
+                updateSuccessors(state);
+            } else {
+                // underconsistent, the state got farther: forget its distance and let it and its successors recompute
+                g[state] = INFINITE;
+                updateState(state);
+                updateSuccessors(state);
+            }
+        }
+    }
+
+    /**
+     * recomputes rhs of a state from its predecessors and puts it in the heap when it is inconsistent
+     *
+     * @param state
+     */
+    private void updateState(int state) {
+        if (state != start) {
+            rhs[state] = bestPredecessor(state);
+        }
+        if (g[state] != rhs[state]) {
+            open.put(state, key(state));
+        } else {
+            open.remove(state);
+        }
+    }
+
+    private void updateSuccessors(int state) {
+        if (state == goal) {
+            return;
+        }
+        int layer = state / n;
+        int idx = state - layer * n;
+        int code = maze.code(idx);
+        for (int dir = 0; dir < 4; dir++) {
+            if ((code & (1 << dir)) == 0) {
+                continue;
+            }
+            int next = maze.neighbor(idx, dir);
+            int nextLayer = maze.has(next, Cell.MINE) ? layer + 1 : layer;
+            if (nextLayer < numLives) {
+                updateState(nextLayer * n + next);
+            }
+        }
+        if (idx == end) {
+            updateState(goal);
+        }
+    }
+
+    /**
+     * the smallest g of a predecessor plus the cost of the move from it
+     *
+     * @param state
+     * @return
+     */
+    private int bestPredecessor(int state) {
+        int best = INFINITE;
+        if (state == goal) {
+            for (int layer = 0; layer < numLives; layer++) {
+                best = Math.min(best, g[layer * n + end] + 1);
+            }
+            return best;
+        }
+        int layer = state / n;
+        int idx = state - layer * n;
+        // whoever enters a mine comes from the layer above
+        int fromLayer = maze.has(idx, Cell.MINE) ? layer - 1 : layer;
+        if (fromLayer < 0) {
+            return INFINITE;
+        }
+        int base = fromLayer * n;
+        for (int dir = 0; dir < 4; dir++) {
+            int prev = predecessor(idx, dir);
+            if (prev >= 0 && g[base + prev] + 1 < best) {
+                best = g[base + prev] + 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * the neighbor in the given direction if it has an opening towards the cell, the openings may be one way so the
+     * cell's own walls do not tell
+     *
+     * @param idx
+     * @param dir
+     * @return -1 if there is no move from that side
+     */
+    private int predecessor(int idx, int dir) {
+        int h = maze.row(idx);
+        int w = maze.col(idx);
+        if ((dir == Cell.DIR_UP && h == 0) || (dir == Cell.DIR_DOWN && h == maze.height - 1)
+                || (dir == Cell.DIR_LEFT && w == 0) || (dir == Cell.DIR_RIGHT && w == maze.width - 1)) {
+            return -1;
+        }
+        int prev = maze.neighbor(idx, dir);
+        return maze.has(prev, 1 << Cell.opposite(dir)) ? prev : -1;
+    }
+
+    /**
+     * [min(g, rhs) + h, min(g, rhs)] packed into one long so the heap compares a single value
+     *
+     * @param state
+     * @return
+     */
+    private long key(int state) {
+        int distance = Math.min(g[state], rhs[state]);
+        int h = 0;
+        if (state != goal) {
+            int idx = state % n;
+            h = Math.abs(maze.row(idx) - maze.row(end)) + Math.abs(maze.col(idx) - maze.col(end));
+        }
+        return ((long) (distance + h) << 32) | distance;
+    }
+
+    /**
+     * follows the best predecessors (smallest g) from the goal back to the start, recording each step. Once the goal
+     * is consistent this traces a shortest path even where g of a state on the way is not settled yet.
+     */
+    private void walkBack() {
+        int state = -1;
+        int best = INFINITE;
+        for (int layer = 0; layer < numLives; layer++) {
+            if (g[layer * n + end] < best) {
+                best = g[layer * n + end];
+                state = layer * n + end;
+            }
+        }
+        while (state != start) {
+            int layer = state / n;
+            int idx = state - layer * n;
+            int base = (maze.has(idx, Cell.MINE) ? layer - 1 : layer) * n;
+            int bestDir = -1;
+            best = INFINITE;
+            for (int dir = 0; dir < 4; dir++) {
+                int prev = predecessor(idx, dir);
+                if (prev >= 0 && g[base + prev] < best) {
+                    best = g[base + prev];
+                    bestDir = dir;
+                }
+            }
+            if (bestDir < 0) {
+                throw new IllegalStateException("state " + state + " has no settled predecessor");
+            }
+            // the path comes in from that side, so it moves the opposite way
+            scratch.addStep(Cell.opposite(bestDir));
+            state = base + maze.neighbor(idx, bestDir);
+        }
+    }
+}
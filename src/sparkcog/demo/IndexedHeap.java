@@ -0,0 +1,158 @@
+package sparkcog.demo;
+
+/**
+ * a binary min heap of int ids, each with a long key, that knows where every id sits. That makes it possible to change
+ * the key of an id or take it out of the middle in O(log n), which is what LPA* (see IncrementalSolver) needs when
+ * states become consistent again before they come out of the queue.
+ *
+ * ids must be below the capacity given at construction, an id is in the heap at most once.
+ */
+
+import java.util.Arrays;
+
+final class IndexedHeap {
+
+    private final int[] heap;               // ids in heap order
+    private final long[] keys;              // key of every id, valid while it is in the heap
+    private final int[] positions;          // heap slot of every id, -1 when it is not in the heap
+    private int size;
+
+    IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new long[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int id) {
+        return positions[id] >= 0;
+    }
+
+    /**
+     * the smallest key
+     *
+     * @return Long.MAX_VALUE when the heap is empty
+     */
+    long topKey() {
+        return size == 0 ? Long.MAX_VALUE : keys[heap[0]];
+    }
+
+    /**
+     * adds the id, or moves it to its new key if it is already in the heap
+     *
+     * @param id
+     * @param key
+     */
+    void put(int id, long key) {
+        int slot = positions[id];
+        if (slot < 0) {
+            keys[id] = key;
+            slot = size++;
+            heap[slot] = id;
+            positions[id] = slot;
+            siftUp(slot);
+        } else {
+            long old = keys[id];
+            keys[id] = key;
+            if (key < old) {
+                siftUp(slot);
+            } else {
+                siftDown(slot);
+            }
+        }
+    }
+
+    /**
+     * removes and returns the id with the smallest key
+     *
+     * @return
+     */
+    int pop() {
+        int id = heap[0];
+        removeAt(0);
+        return id;
+    }
+
+    /**
+     * takes the id out of the heap if it is in it
+     *
+     * @param id
+     */
+    void remove(int id) {
+        int slot = positions[id];
+        if (slot >= 0) {
+            removeAt(slot);
+        }
+    }
+
+    /**
+     * empties the heap
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int slot) {
+        int id = heap[slot];
+        positions[id] = -1;
+        size--;
+        if (slot == size) {
+            return;
+        }
+        int last = heap[size];
+        heap[slot] = last;
+        positions[last] = slot;
+        siftUp(slot);
+        siftDown(positions[last]);
+    }
+
+    private void siftUp(int slot) {
+        int id = heap[slot];
+        long key = keys[id];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            int parentId = heap[parent];
+            if (keys[parentId] <= key) {
+                break;
+            }
+            heap[slot] = parentId;
+            positions[parentId] = slot;
+            slot = parent;
+        }
+        heap[slot] = id;
+        positions[id] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int id = heap[slot];
+        long key = keys[id];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            int childId = heap[child];
+            if (key <= keys[childId]) {
+                break;
+            }
+            heap[slot] = childId;
+            positions[childId] = slot;
+            slot = child;
+        }
+        heap[slot] = id;
+        positions[id] = slot;
+    }
+}
@@ -0,0 +1,79 @@
+package sparkcog.demo;
+
+/**
+ * a first in first out queue of primitive ints backed by a ring buffer. The capacity is always a power of two so the
+ * head and tail wrap with a mask instead of a modulo, and the buffer only grows when it is actually full, which means a
+ * queue that is reused across solves stops allocating once it has seen the largest frontier.
+ */
+
+import java.util.Arrays;
+
+public class IntQueue {
+
+    private int[] buffer;                   // ring buffer, length is a power of two
+    private int head;                       // index of the next element to remove
+    private int size;                       // number of queued elements
+    private int peak;                       // most elements queued at once since the last clear
+
+    public IntQueue(int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+        this.buffer = new int[capacity];
+    }
+
+    public void add(int value) {
+        if (size == buffer.length) {
+            grow();
+        }
+        buffer[(head + size) & (buffer.length - 1)] = value;
+        if (++size > peak) {
+            peak = size;
+        }
+    }
+
+    public int remove() {
+        int value = buffer[head];
+        head = (head + 1) & (buffer.length - 1);
+        size--;
+        return value;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * the most elements that were queued at once since the last clear
+     *
+     * @return
+     */
+    public int peak() {
+        return peak;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        peak = 0;
+    }
+
+    /**
+     * doubles the buffer and unwraps the queued elements to the start of the new one
+     */
+    private void grow() {
+        int[] grown = Arrays.copyOf(buffer, buffer.length << 1);
+        if (head != 0) {
+            // the wrapped part sits at [0, head), move it behind the old end
+            System.arraycopy(buffer, 0, grown, buffer.length, head);
+            System.arraycopy(grown, head, grown, 0, buffer.length);
+        }
+        head = 0;
+        buffer = grown;
+    }
+}
@@ -0,0 +1,284 @@
+package sparkcog.demo;
+
+/**
+ * the maze with its corridors contracted, for searches that should not pay per cell. Most cells of a maze have two
+ * openings and a search can only pass through them one way or the other, so a corridor between two junctions is one
+ * weighted edge here and the search runs on the junctions alone.
+ *
+ * the graph is built in two passes over the maze:
+ *   - dead end filling: a cell with at most one neighbor it connects to (an opening either way) is a dead end and is
+ *     filled, which can turn its neighbor into a dead end in turn. No path from the start to the end goes into a dead
+ *     end and comes back out, so whole dead end branches drop out. The start and the end are never filled.
+ *   - contraction: of the cells that are left, the ones open both ways to exactly two neighbors are corridor cells.
+ *     Everything else (junctions, the start, the end, mines and cells with one way openings) is a node, and walking
+ *     from a node through corridor cells until the next node gives an edge.
+ *
+ * an edge keeps its length, the mines it steps on (the target, corridor cells never hold one) and its run of
+ * directions, 2 bits a step packed into one array for all edges, so the path can be expanded cell by cell again.
+ * Edges are kept per node in flat arrays (edgeStart, then target / length / mines / run offset).
+ *
+ * a graph is built once per maze and kept by it (see Maze.junctions), an edit of the maze drops it.
+ */
+
+import java.util.Arrays;
+
+final class JunctionGraph {
+
+    final int nodeCount;
+    final int[] nodeCells;                  // cell of every node
+    final int startNode;                    // -1 when the maze has no start
+    final int endNode;
+    final int[] edgeStart;                  // edges of node u are edgeStart[u] up to edgeStart[u + 1]
+    final int[] edgeTarget;
+    final int[] edgeLength;
+    final byte[] edgeMines;
+    final long[] edgeRun;                   // index of the first direction of every edge in runs
+    final long[] runs;                      // 2-bit directions of all edges, see PackedBits
+    final int filled;                       // cells dropped as dead ends
+
+    private JunctionGraph(int nodeCount, int[] nodeCells, int startNode, int endNode, int[] edgeStart,
+            int[] edgeTarget, int[] edgeLength, byte[] edgeMines, long[] edgeRun, long[] runs, int filled) {
+        this.nodeCount = nodeCount;
+        this.nodeCells = nodeCells;
+        this.startNode = startNode;
+        this.endNode = endNode;
+        this.edgeStart = edgeStart;
+        this.edgeTarget = edgeTarget;
+        this.edgeLength = edgeLength;
+        this.edgeMines = edgeMines;
+        this.edgeRun = edgeRun;
+        this.runs = runs;
+        this.filled = filled;
+    }
+
+    /**
+     * builds the graph of a maze
+     *
+     * @param maze
+     * @return
+     */
+    static JunctionGraph build(Maze maze) {
+        int n = maze.size();
+        byte[] degree = new byte[n];        // neighbors a cell connects to, -1 once it is filled
+        for (int idx = 0; idx < n; idx++) {
+            degree[idx] = (byte) Integer.bitCount(connections(maze, idx));
+        }
+        int filled = fillDeadEnds(maze, degree);
+
+        // number the nodes, cell by cell
+        int[] nodeOf = new int[n];
+        int[] nodeCells = new int[64];
+        int nodeCount = 0;
+        for (int idx = 0; idx < n; idx++) {
+            nodeOf[idx] = -1;
+            if (degree[idx] >= 0 && !isCorridor(maze, idx, degree)) {
+                if (nodeCount == nodeCells.length) {
+                    nodeCells = Arrays.copyOf(nodeCells, nodeCount << 1);
+                }
+                nodeOf[idx] = nodeCount;
+                nodeCells[nodeCount++] = idx;
+            }
+        }
+
+        // walk every corridor leaving every node
+        int[] edgeStart = new int[nodeCount + 1];
+        int[] edgeTarget = new int[64];
+        int[] edgeLength = new int[64];
+        byte[] edgeMines = new byte[64];
+        long[] edgeRun = new long[64];
+        long[] runs = new long[64];
+        long steps = 0;
+        int edges = 0;
+        for (int u = 0; u < nodeCount; u++) {
+            edgeStart[u] = edges;
+            int from = nodeCells[u];
+            int code = maze.code(from);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) == 0 || degree[maze.neighbor(from, dir)] < 0) {
+                    continue;
+                }
+                int prev = from;
+                int idx = maze.neighbor(from, dir);
+                int step = dir;
+                int length = 0;
+                while (true) {
+                    if (PackedBits.wordsForPairs(steps + length + 1) > runs.length) {
+                        runs = Arrays.copyOf(runs, runs.length << 1);
+                    }
+                    PackedBits.setPair(runs, steps + length++, step);
+                    if (nodeOf[idx] >= 0) {
+                        break;
+                    }
+                    step = corridorDir(maze, idx, prev, degree);
+                    prev = idx;
+                    idx = maze.neighbor(idx, step);
+                }
+                if (nodeOf[idx] == u) {
+                    continue;                           // a loop back to the node itself never shortens a path
+                }
+                if (edges == edgeTarget.length) {
+                    edgeTarget = Arrays.copyOf(edgeTarget, edges << 1);
+                    edgeLength = Arrays.copyOf(edgeLength, edges << 1);
+                    edgeMines = Arrays.copyOf(edgeMines, edges << 1);
+                    edgeRun = Arrays.copyOf(edgeRun, edges << 1);
+                }
+                edgeTarget[edges] = nodeOf[idx];
+                edgeLength[edges] = length;
+                edgeMines[edges] = (byte) (maze.has(idx, Cell.MINE) ? 1 : 0);
+                edgeRun[edges] = steps;
+                steps += length;
+                edges++;
+            }
+        }
+        edgeStart[nodeCount] = edges;
+        int startNode = maze.startIndex >= 0 ? nodeOf[maze.startIndex] : -1;
+        int endNode = maze.endIndex >= 0 ? nodeOf[maze.endIndex] : -1;
+        return new JunctionGraph(nodeCount, Arrays.copyOf(nodeCells, nodeCount), startNode, endNode, edgeStart,
+                Arrays.copyOf(edgeTarget, edges), Arrays.copyOf(edgeLength, edges), Arrays.copyOf(edgeMines, edges),
+                Arrays.copyOf(edgeRun, edges), Arrays.copyOf(runs, PackedBits.wordsForPairs(steps)), filled);
+    }
+
+    /**
+     * the directions in which a cell connects to a neighbor, through an opening of either of the two
+     *
+     * @param maze
+     * @param idx
+     * @return a bit per direction ordinal
+     */
+    private static int connections(Maze maze, int idx) {
+        int code = maze.code(idx);
+        int h = maze.row(idx);
+        int w = maze.col(idx);
+        int dirs = code & 0xF;
+        if (h > 0 && maze.has(idx - maze.width, Cell.DOWN)) {
+            dirs |= Cell.UP;
+        }
+        if (w < maze.width - 1 && maze.has(idx + 1, Cell.LEFT)) {
+            dirs |= Cell.RIGHT;
+        }
+        if (h < maze.height - 1 && maze.has(idx + maze.width, Cell.UP)) {
+            dirs |= Cell.DOWN;
+        }
+        if (w > 0 && maze.has(idx - 1, Cell.RIGHT)) {
+            dirs |= Cell.LEFT;
+        }
+        return dirs;
+    }
+
+    /**
+     * fills the dead ends, a filled cell gets degree -1
+     *
+     * @param maze
+     * @param degree
+     * @return number of cells filled
+     */
+    private static int fillDeadEnds(Maze maze, byte[] degree) {
+        int n = degree.length;
+        IntQueue queue = new IntQueue(1024);
+        for (int idx = 0; idx < n; idx++) {
+            if (degree[idx] <= 1 && !maze.has(idx, Cell.START | Cell.END)) {
+                queue.add(idx);
+            }
+        }
+        int filled = 0;
+        while (!queue.isEmpty()) {
+            int idx = queue.remove();
+            if (degree[idx] < 0) {
+                continue;
+            }
+            degree[idx] = -1;
+            filled++;
+            int dirs = connections(maze, idx);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((dirs & (1 << dir)) == 0) {
+                    continue;
+                }
+                int next = maze.neighbor(idx, dir);
+                if (degree[next] > 0 && --degree[next] <= 1 && !maze.has(next, Cell.START | Cell.END)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * whether a cell that is left after filling is a corridor cell: open both ways to exactly two neighbors that are
+     * left, and no start, end or mine
+     *
+     * @param maze
+     * @param idx
+     * @param degree
+     * @return
+     */
+    private static boolean isCorridor(Maze maze, int idx, byte[] degree) {
+        int code = maze.code(idx);
+        if (degree[idx] != 2 || (code & (Cell.START | Cell.END | Cell.MINE)) != 0) {
+            return false;
+        }
+        int dirs = connections(maze, idx);
+        for (int dir = 0; dir < 4; dir++) {
+            if ((dirs & (1 << dir)) == 0 || degree[maze.neighbor(idx, dir)] < 0) {
+                continue;
+            }
+            // a one way connection makes it a node, the search has to decide there
+            if ((code & (1 << dir)) == 0 || !maze.has(maze.neighbor(idx, dir), 1 << Cell.opposite(dir))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the direction a corridor continues in, towards the one of its two live neighbors it was not entered from
+     *
+     * @param maze
+     * @param idx a corridor cell
+     * @param prev the cell it was entered from
+     * @param degree
+     * @return
+     */
+    private static int corridorDir(Maze maze, int idx, int prev, byte[] degree) {
+        int code = maze.code(idx);
+        for (int dir = 0; dir < 4; dir++) {
+            if ((code & (1 << dir)) != 0) {
+                int next = maze.neighbor(idx, dir);
+                if (next != prev && degree[next] >= 0) {
+                    return dir;
+                }
+            }
+        }
+        throw new IllegalStateException("cell " + idx + " is not a corridor cell");
+    }
+
+    /**
+     * the node an edge leaves from
+     *
+     * @param edge
+     * @return
+     */
+    int source(int edge) {
+        int u = Arrays.binarySearch(edgeStart, 0, nodeCount + 1, edge);
+        if (u < 0) {
+            return -u - 2;
+        }
+        // nodes without edges share their start with the next one, the edge belongs to the last of them
+        while (u < nodeCount && edgeStart[u + 1] == edge) {
+            u++;
+        }
+        return u;
+    }
+
+    /**
+     * records the steps of an edge, from its target back to its source like every other search (see SolverScratch)
+     *
+     * @param edge
+     * @param s
+     */
+    void expandEdge(int edge, SolverScratch s) {
+        long first = edgeRun[edge];
+        for (long i = first + edgeLength[edge] - 1; i >= first; i--) {
+            s.addStep(PackedBits.getPair(runs, i));
+        }
+    }
+}
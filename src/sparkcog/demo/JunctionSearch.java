@@ -0,0 +1,128 @@
+package sparkcog.demo;
+
+/**
+ * exact shortest survivable path search on the junction graph of a maze (see JunctionGraph) instead of its cells. The
+ * edges have lengths, so this is Dijkstra rather than BFS, over the same layered states as LivesAwareSearch: (node,
+ * mines stepped on), where an edge onto a mine goes one layer down and a state is skipped when its node was already
+ * settled in the same or a lower layer. The lengths are small integers and Dijkstra settles them in order, so the
+ * open list is a bucket queue (see BucketQueue).
+ *
+ * the graph is built on the first search of a maze and kept by it, so solving a maze again (eg. with other lives)
+ * only pays for the search. Once the path of nodes is known every edge is expanded back into its directions.
+ */
+
+final class JunctionSearch {
+
+    private JunctionSearch() {
+    }
+
+    /**
+     * searches for the shortest survivable path, on success the path is left in the scratch steps (recorded from the
+     * end back to the start)
+     *
+     * @param maze
+     * @param numLives
+     * @param s
+     * @return false if no path exists with the given lives
+     */
+    static boolean search(Maze maze, int numLives, SolverScratch s) {
+        s.prepare(0);
+        if (maze.startIndex < 0 || maze.endIndex < 0 || numLives < 1) {
+            return false;
+        }
+        if (maze.startIndex == maze.endIndex) {
+            return true;
+        }
+        JunctionGraph graph = maze.junctions();
+        int k = graph.nodeCount;
+        if ((long) k * numLives > Integer.MAX_VALUE - 8) {
+            // more states than the arrays can hold, the cell based search packs them tighter
+            return LivesAwareSearch.search(maze, numLives, s);
+        }
+        int states = k * numLives;
+        s.prepare(states);
+        s.prepareEdgeParents(states);
+        int generation = s.generation;
+        int[] distance = s.distance;
+        int[] open = s.seen;
+        int[] closed = s.marks;
+        int[] parents = s.edgeParents;
+        BucketQueue buckets = s.buckets;
+        // a shortest path never visits a cell twice, so no distance exceeds the number of cells
+        buckets.reset(maze.size());
+
+        int start = graph.startNode;
+        int end = graph.endNode;
+        distance[start] = 0;
+        open[start] = generation;
+        buckets.add(0, start);
+        while (!buckets.isEmpty()) {
+            int state = buckets.remove();
+            int node = state % k;
+            int layer = state / k;
+            if (closed[state] == generation || settled(closed, generation, k, node, layer - 1)) {
+                continue;
+            }
+            closed[state] = generation;
+            s.expanded++;
+            if (node == end) {
+                walkParents(graph, s, state);
+                return true;
+            }
+            int d = distance[state];
+            for (int e = graph.edgeStart[node]; e < graph.edgeStart[node + 1]; e++) {
+                int nextLayer = layer + graph.edgeMines[e];
+                if (nextLayer >= numLives) {
+                    continue;
+                }
+                int target = graph.edgeTarget[e];
+                int next = nextLayer * k + target;
+                int nextDistance = d + graph.edgeLength[e];
+                if (settled(closed, generation, k, target, nextLayer)
+                        || (open[next] == generation && distance[next] <= nextDistance)) {
+                    continue;
+                }
+                open[next] = generation;
+                distance[next] = nextDistance;
+                parents[next] = e;
+                buckets.add(nextDistance, next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * whether a node was already settled with at most the given number of mines stepped on
+     *
+     * @param closed
+     * @param generation
+     * @param k
+     * @param node
+     * @param layer
+     * @return
+     */
+    private static boolean settled(int[] closed, int generation, int k, int node, int layer) {
+        for (int l = 0; l <= layer; l++) {
+            if (closed[l * k + node] == generation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * follows the parent edges from a state back to the start, expanding each edge into its steps
+     *
+     * @param graph
+     * @param s
+     * @param state
+     */
+    private static void walkParents(JunctionGraph graph, SolverScratch s, int state) {
+        int k = graph.nodeCount;
+        while (state != graph.startNode) {
+            int edge = s.edgeParents[state];
+            graph.expandEdge(edge, s);
+            state = (state / k - graph.edgeMines[edge]) * k + graph.source(edge);
+        }
+    }
+}
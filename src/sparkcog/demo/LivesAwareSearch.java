@@ -0,0 +1,173 @@
+package sparkcog.demo;
+
+/**
+ * exact shortest path search that takes the lives into account. Stepping on a mine costs a life and a path may never
+ * use the last one, so with numLives lives a path can cross at most numLives - 1 mines.
+ *
+ * the search runs a single BFS over the layered state space (cell, mines stepped on). Layer k holds the cells reached
+ * after stepping on k mines, a move onto a mine goes one layer down. A state is skipped when the same cell was already
+ * reached in the same or a lower layer, since that earlier visit was at most as far away and has at least as many
+ * lives left. Each state takes 1 visited bit and a 2-bit parent direction, so the memory is about 3 bits per cell per
+ * life, and the path is rebuilt by following the parent directions back from the end. None of the int arrays of the
+ * scratch are used.
+ */
+
+final class LivesAwareSearch {
+
+    private LivesAwareSearch() {
+    }
+
+    /**
+     * searches for the shortest survivable path, on success the path is left in the scratch steps (recorded from the
+     * end back to the start)
+     *
+     * @param maze
+     * @param numLives
+     * @param s
+     * @return false if no path exists with the given lives
+     */
+    static boolean search(Maze maze, int numLives, SolverScratch s) {
+        s.prepare(0);
+        if (maze.startIndex < 0 || maze.endIndex < 0 || numLives < 1) {
+            return false;
+        }
+        return maze.startIndex == maze.endIndex || flood(maze, numLives, s, null) > 0;
+    }
+
+    /**
+     * one search for every number of lives from 1 up to maxLives. The search runs on after it reaches the end: with
+     * fewer lives the path found so far is out of reach, and a later arrival in a lower layer is the shortest path that
+     * steps on fewer mines. Arrivals only come in ever lower layers, the search stops after one in layer 0. A search
+     * with numLives lives would have stopped at the first arrival in a layer below numLives, and up to that point it
+     * reaches the same states with the same parents, since a state is only ever reached from its own or a lower layer.
+     *
+     * the paths stay in the scratch parents, pathTo records the one of an arrival in the steps.
+     *
+     * @param maze
+     * @param maxLives
+     * @param s
+     * @param arrivals gets the layers the end was reached in, first (and shortest) to last, room for maxLives
+     * @return the number of arrivals
+     */
+    static int sweep(Maze maze, int maxLives, SolverScratch s, int[] arrivals) {
+        s.prepare(0);
+        if (maze.startIndex < 0 || maze.endIndex < 0 || maxLives < 1) {
+            return 0;
+        }
+        if (maze.startIndex == maze.endIndex) {
+            arrivals[0] = 0;
+            return 1;
+        }
+        return flood(maze, maxLives, s, arrivals);
+    }
+
+    /**
+     * records the path of an arrival of the last sweep in the scratch steps, in place of whatever they held
+     *
+     * @param maze
+     * @param s
+     * @param layer
+     */
+    static void pathTo(Maze maze, SolverScratch s, int layer) {
+        s.stepCount = 0;
+        walkParents(maze, s, maze.endIndex, layer);
+    }
+
+    /**
+     * the BFS over the layered states of a maze whose start is not its end
+     *
+     * @param maze
+     * @param numLives
+     * @param s
+     * @param arrivals null to stop at the first arrival and walk its path back, otherwise every arrival is recorded
+     * @return the number of arrivals
+     */
+    private static int flood(Maze maze, int numLives, SolverScratch s, int[] arrivals) {
+        int start = maze.startIndex;
+        int end = maze.endIndex;
+        int n = maze.size();
+        s.prepareLayers((long) n * numLives);
+        long[] seen = s.layerSeen;
+        long[] parents = s.layerParents;
+        IntQueue q = s.queue;
+        int found = 0;
+
+        // the queue holds (cell, layer) pairs as two consecutive entries
+        PackedBits.set(seen, start);
+        q.add(start);
+        q.add(0);
+        while (!q.isEmpty()) {
+            int idx = q.remove();
+            int layer = q.remove();
+            s.expanded++;
+            int code = maze.code(idx);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) == 0) {
+                    continue;
+                }
+                int next = maze.neighbor(idx, dir);
+                int nextLayer = maze.has(next, Cell.MINE) ? layer + 1 : layer;
+                if (nextLayer >= numLives || reached(seen, n, next, nextLayer)) {
+                    continue;
+                }
+                long state = (long) nextLayer * n + next;
+                PackedBits.set(seen, state);
+                PackedBits.setPair(parents, state, dir);
+                // BFS discovers states in order of distance, the first time the end shows up is the shortest
+                if (next == end) {
+                    if (arrivals == null) {
+                        walkParents(maze, s, next, nextLayer);
+                        return 1;
+                    }
+                    arrivals[found++] = nextLayer;
+                    if (nextLayer == 0) {
+                        return found;
+                    }
+                    // going on from the end only leads to paths with more mines than this one
+                    continue;
+                }
+                q.add(next);
+                q.add(nextLayer);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * checks whether a cell was already reached with at most the given number of mines stepped on
+     *
+     * @param seen
+     * @param n
+     * @param idx
+     * @param layer
+     * @return
+     */
+    private static boolean reached(long[] seen, int n, int idx, int layer) {
+        for (int k = 0; k <= layer; k++) {
+            if (PackedBits.get(seen, (long) k * n + idx)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * follows the parent directions from a state back to the start, recording each step
+     *
+     * @param maze
+     * @param s
+     * @param idx
+     * @param layer
+     */
+    private static void walkParents(Maze maze, SolverScratch s, int idx, int layer) {
+        int n = maze.size();
+        while (idx != maze.startIndex) {
+            int dir = PackedBits.getPair(s.layerParents, (long) layer * n + idx);
+            s.addStep(dir);
+            if (maze.has(idx, Cell.MINE)) {
+                layer--;
+            }
+            idx = maze.neighbor(idx, Cell.opposite(dir));
+        }
+    }
+}
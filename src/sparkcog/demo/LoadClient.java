@@ -0,0 +1,211 @@
+package sparkcog.demo;
+
+/**
+ * drives a SolverServer on the same machine and reports throughput and latency, to see what the server does under
+ * load without another tool. Every connection pipelines its requests: it keeps up to a window of them in flight, sends
+ * the next one as soon as an answer comes back and times every request from the moment it was written to the moment
+ * its answer was read. The mazes come from a file of maze lines, or are generated (see MazeGenerator), and are sent
+ * round robin until the number of requests is reached.
+ *
+ * at the end it prints the number of answers by status, requests per second and the client side latency percentiles,
+ * followed by the server's own statistics (a STATS request).
+ *
+ * usage: LoadClient [file] [--generate size count] [--port n] [--connections n] [--requests n] [--window n]
+ *                   [--lives n]
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoadClient {
+
+    private final List<String> mazes;
+    private final int port;
+    private final int lives;
+    private final SolverMetrics.Histogram latency = new SolverMetrics.Histogram();
+    private final LongAdder[] statuses = new LongAdder[4];
+
+    LoadClient(List<String> mazes, int port, int lives) {
+        this.mazes = mazes;
+        this.port = port;
+        this.lives = lives;
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String mazeFile = "../../mazes.txt";
+        int generateSize = 0;
+        int generateCount = 0;
+        int port = SolverProtocol.DEFAULT_PORT;
+        int connections = 1;
+        int requests = 10000;
+        int window = 64;
+        int lives = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--generate":
+                    generateSize = Integer.parseInt(args[++i]);
+                    generateCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(args[++i]);
+                    break;
+                case "--window":
+                    window = Integer.parseInt(args[++i]);
+                    break;
+                case "--lives":
+                    lives = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    mazeFile = args[i];
+            }
+        }
+
+        List<String> mazes = new ArrayList<>();
+        if (generateCount > 0) {
+            MazeGenerator generator = new MazeGenerator(generateSize, generateSize, 1);
+            generator.style = MazeGenerator.Style.BRAIDED;
+            generator.randomEnds = true;
+            for (int i = 0; i < generateCount; i++) {
+                generator.seed = i;
+                StringWriter text = new StringWriter();
+                generator.writeText(text);
+                mazes.add(text.toString());
+            }
+        } else {
+            for (String line : Files.readAllLines(Paths.get(mazeFile))) {
+                if (!line.isEmpty()) {
+                    mazes.add(line);
+                }
+            }
+        }
+
+        LoadClient client = new LoadClient(mazes, port, lives);
+        long begin = System.nanoTime();
+        client.run(connections, requests, window);
+        long nanos = System.nanoTime() - begin;
+        SolverMetrics.Histogram latency = client.latency;
+        System.out.println(requests + " requests over " + connections + " connections in " + nanos / 1000000
+                + " ms, " + (long) (requests * 1e9 / nanos) + " requests/s");
+        System.out.println("answers: " + client.statuses[SolverProtocol.PATH].sum() + " paths, "
+                + client.statuses[SolverProtocol.NO_PATH].sum() + " no path, "
+                + client.statuses[SolverProtocol.ERROR].sum() + " errors");
+        System.out.println("latency us: p50 " + latency.percentile(50) / 1000 + ", p90 " + latency.percentile(90) / 1000
+                + ", p99 " + latency.percentile(99) / 1000 + ", max " + latency.getMax() / 1000);
+        System.out.print("server: " + client.serverStats());
+    }
+
+    /**
+     * sends the requests over the given number of connections at once and waits for every answer
+     *
+     * @param connections
+     * @param requests
+     * @param window most requests in flight per connection
+     * @throws InterruptedException
+     */
+    void run(int connections, int requests, final int window) throws InterruptedException {
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            // the requests are spread evenly, the first connections take the remainder
+            final int count = requests / connections + (c < requests % connections ? 1 : 0);
+            final int first = c;
+            threads[c] = new Thread(() -> {
+                try {
+                    runConnection(first, count, window);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "load-connection-" + c);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * one connection: this thread writes, a second one reads the answers and opens the window again
+     *
+     * @param offset index of the first maze, so connections start on different mazes
+     * @param count
+     * @param window
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void runConnection(int offset, int count, int window) throws IOException, InterruptedException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            final long[] sent = new long[count];
+            final Semaphore inFlight = new Semaphore(window);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            Thread reader = new Thread(() -> {
+                try {
+                    SolverProtocol.Response response;
+                    while ((response = SolverProtocol.readResponse(in)) != null) {
+                        latency.add(System.nanoTime() - sent[(int) response.id]);
+                        statuses[response.status].increment();
+                        inFlight.release();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, Thread.currentThread().getName() + "-reader");
+            reader.start();
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            for (int i = 0; i < count; i++) {
+                if (!inFlight.tryAcquire()) {
+                    // the window is full, what was written so far has to go out before an answer can come back
+                    out.flush();
+                    inFlight.acquire();
+                }
+                String maze = mazes.get((offset + i) % mazes.size());
+                sent[i] = System.nanoTime();
+                SolverProtocol.writeRequest(out, SolverProtocol.SOLVE, i, lives, maze);
+            }
+            out.flush();
+            socket.shutdownOutput();
+            reader.join();
+        }
+    }
+
+    /**
+     * asks the server for its statistics over a connection of its own
+     *
+     * @return
+     * @throws IOException
+     */
+    String serverStats() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            SolverProtocol.writeRequest(out, SolverProtocol.STATS, 0, 0, "");
+            out.flush();
+            socket.shutdownOutput();
+            SolverProtocol.Response response = SolverProtocol.readResponse(
+                    new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            return response == null ? "no answer\n" : response.text;
+        }
+    }
+}
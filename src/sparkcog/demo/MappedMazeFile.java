@@ -0,0 +1,121 @@
+package sparkcog.demo;
+
+/**
+ * a maze file (one compact maze per line) that is memory mapped instead of read into strings. Opening the file scans
+ * it once for line starts and keeps only that index, a long per maze, mazes are parsed straight from the mapped bytes
+ * when they are asked for. That way files larger than the heap can be processed, any maze can be picked by its index
+ * and threads can split the work by index range without copying anything.
+ *
+ * a single mapping is limited to 2 GB, so the file is mapped as several regions that each start at a line start and
+ * hold whole lines (see MappedRegions). Reading is thread safe, every call works on its own view of the mapped region.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class MappedMazeFile implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private long[] lineStarts = new long[1024];     // file offset of every non blank line
+    private int lineCount;
+    private MappedRegions regions;
+
+    public MappedMazeFile(Path path) throws IOException {
+        this(path, MappedRegions.MAX_REGION);
+    }
+
+    /**
+     * maps a maze file using regions of at most maxRegion bytes
+     *
+     * @param path
+     * @param maxRegion
+     * @throws IOException
+     */
+    MappedMazeFile(Path path, long maxRegion) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            indexLines(maxRegion);
+            regions = new MappedRegions(channel, fileSize, lineStarts, lineCount, maxRegion);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * number of mazes in the file
+     *
+     * @return
+     */
+    public int size() {
+        return lineCount;
+    }
+
+    /**
+     * parses the maze at the given index
+     *
+     * @param index
+     * @return
+     */
+    public Maze get(int index) {
+        return new MazeParser(line(index)).next();
+    }
+
+    /**
+     * a read only view of the bytes of one maze line, positioned at its first byte. The view ends with the mapped
+     * region so a parser stops at the line break on its own.
+     *
+     * @param index
+     * @return
+     */
+    public ByteBuffer line(int index) {
+        if (index < 0 || index >= lineCount) {
+            throw new IndexOutOfBoundsException("maze " + index + " of " + lineCount);
+        }
+        return regions.view(lineStarts[index]);
+    }
+
+    /**
+     * scans the file for line starts, blank lines are left out of the index
+     *
+     * @param window
+     * @throws IOException
+     */
+    private void indexLines(long window) throws IOException {
+        boolean atLineStart = true;
+        for (long offset = 0; offset < fileSize; offset += window) {
+            long length = Math.min(window, fileSize - offset);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    atLineStart = true;
+                } else if (atLineStart) {
+                    atLineStart = false;
+                    if (lineCount == lineStarts.length) {
+                        lineStarts = Arrays.copyOf(lineStarts, lineCount << 1);
+                    }
+                    lineStarts[lineCount++] = offset + i;
+                }
+            }
+        }
+    }
+
+    /**
+     * closes the file, the mappings themselves go away once the buffers handed out are garbage collected
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        regions = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,78 @@
+package sparkcog.demo;
+
+/**
+ * maps a file as a series of read only regions that never cut a record in two. A single mapping is limited to 2 GB,
+ * so larger files are mapped as several regions, each starting at a record start and holding as many whole records
+ * as fit. Used by the memory mapped maze files, where a record is a text line or a binary maze.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+final class MappedRegions {
+
+    static final long MAX_REGION = Integer.MAX_VALUE;   // largest single mapping
+
+    private final long[] starts;                        // file offset of every region
+    private final MappedByteBuffer[] regions;
+
+    /**
+     * maps the file
+     *
+     * @param channel
+     * @param fileSize
+     * @param recordStarts file offsets of the records, ascending
+     * @param recordCount number of valid entries in recordStarts
+     * @param maxRegion largest region to map
+     * @throws IOException when a single record is larger than maxRegion
+     */
+    MappedRegions(FileChannel channel, long fileSize, long[] recordStarts, int recordCount, long maxRegion)
+            throws IOException {
+        long[] regionStarts = new long[4];
+        MappedByteBuffer[] mapped = new MappedByteBuffer[4];
+        int count = 0;
+        long start = 0;
+        int record = 0;
+        while (start < fileSize) {
+            long end = Math.min(start + maxRegion, fileSize);
+            if (end < fileSize && record < recordCount && recordStarts[record] < end) {
+                // end the region at the start of the last record that does not fit completely
+                int next = Arrays.binarySearch(recordStarts, record, recordCount, end);
+                next = next >= 0 ? next : -next - 2;
+                if (recordStarts[next] <= start) {
+                    throw new IOException("record at offset " + start + " is longer than " + maxRegion + " bytes");
+                }
+                end = recordStarts[next];
+                record = next;
+            }
+            if (count == mapped.length) {
+                mapped = Arrays.copyOf(mapped, count << 1);
+                regionStarts = Arrays.copyOf(regionStarts, count << 1);
+            }
+            mapped[count] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            regionStarts[count++] = start;
+            start = end;
+        }
+        this.regions = Arrays.copyOf(mapped, count);
+        this.starts = Arrays.copyOf(regionStarts, count);
+    }
+
+    /**
+     * a view of the region holding the given file offset, positioned at that offset and ending with the region
+     *
+     * @param offset
+     * @return
+     */
+    ByteBuffer view(long offset) {
+        int region = Arrays.binarySearch(starts, offset);
+        if (region < 0) {
+            region = -region - 2;
+        }
+        ByteBuffer view = regions[region].duplicate();
+        view.position((int) (offset - starts[region]));
+        return view;
+    }
+}
@@ -5,94 +5,359 @@ package sparkcog.demo;
  * date: April 21, 2019
  *
  * The maze object holds the dimensions of the maze, the starting and ending cells and the cell structure itself.
- * once instantiated every maze object parses the compact text maze representation to get its values. Finally, each maze
- * has some helper methods that print its structural and visual representations.
+ * once instantiated every maze object parses the compact text maze representation to get its values (see MazeParser).
+ * Finally, each maze has some helper methods that print its structural and visual representations.
  *
  * each maze has its origin at the upper left hand of the grid. The grid is zero based, with height increasing downwards
  * in the vertical and width in the horizontal.
+ *
+ * the cells are kept packed in a single row-major byte array holding the raw 7-bit cell codes, cell (h, w) lives at
+ * index h * width + w. Solvers work on those indices and the bit masks in Cell directly; Cell objects are only created
+ * on demand through getCell. A maze loaded from the binary format can instead read its codes straight out of a
+ * (memory mapped) buffer, see BinaryMazeFormat.
+ *
+ * a maze can be edited cell by cell (setCode, setWall, setMine), the edits keep the walls of neighboring cells in
+ * agreement. A maze that reads from a buffer copies its codes to the heap on the first edit.
  */
 
+import java.nio.ByteBuffer;
+
 public class Maze {
 
     public int height;                      // maze height
     public int width;                       // maze width
-    public Cell[][] structure;              // maze structure with decoded cells
+    public int startIndex = -1;             // row-major index of the start of the maze
+    public int endIndex = -1;               // row-major index of the end of the maze
     public Cell startCell;                  // start of the maze
     public Cell endCell;                    // end of the maze
+    byte[] cells;                           // packed row-major cell codes, null when the maze views a buffer
+    ByteBuffer cellBuffer;                  // row-major cell codes outside the heap, cell 0 at buffer index 0
+    private JunctionGraph junctions;        // built on first use, dropped by every edit
+    private Connectivity connectivity;      // found on request, dropped by every edit
 
     Maze(String compactMaze) {
-        String dims = parseDims(compactMaze);
-        this.height = getDim(dims, "height");
-        this.width = getDim(dims, "width");
-        this.structure = parseStructure(compactMaze);
+        new MazeParser(compactMaze).readInto(this);
+    }
+
+    /**
+     * builds a maze around an already packed row-major cell array, the array is taken over (not copied)
+     *
+     * @param height
+     * @param width
+     * @param cells
+     */
+    Maze(int height, int width, byte[] cells) {
+        setCells(height, width, cells);
     }
 
     /**
-     * parses the dimensions of the maze from its compact representation
+     * a maze on the heap with the same cells as this one, later edits of either do not show in the other
      *
-     * @param dims
-     * @param dim
      * @return
      */
-    private int getDim(String dims, String dim) {
-        dims = dims.replaceAll("[()]","");
-        String dimsArr[] = dims.split(",");
-        int dimension = 0;
-
-        switch (dim) {
-            case "height":
-                dimension = Integer.parseInt(dimsArr[0]);
-                break;
-            case "width":
-                dimension = Integer.parseInt(dimsArr[1]);
-                break;
-            default:
-                System.out.println("unkown dimension");
+    Maze copy() {
+        byte[] codes = new byte[size()];
+        for (int idx = 0; idx < codes.length; idx++) {
+            codes[idx] = (byte) code(idx);
         }
+        Maze copy = new Maze(height, width, codes);
+        // with several START or END bits the copy keeps the ones this maze uses
+        copy.startIndex = startIndex;
+        copy.startCell = startCell;
+        copy.endIndex = endIndex;
+        copy.endCell = endCell;
+        copy.connectivity = connectivity;
+        return copy;
+    }
+
+    /**
+     * builds a maze that reads its cell codes from a buffer without copying them, the codes must already be clean
+     * (no openings off the grid) as written by BinaryMazeFormat
+     *
+     * @param height
+     * @param width
+     * @param cells one code per byte, cell 0 at index 0
+     * @param startIndex
+     * @param endIndex
+     */
+    Maze(int height, int width, ByteBuffer cells, int startIndex, int endIndex) {
+        this.height = height;
+        this.width = width;
+        this.cellBuffer = cells;
+        this.startIndex = startIndex;
+        this.endIndex = endIndex;
+        if (startIndex >= 0) {
+            this.startCell = getCell(row(startIndex), col(startIndex));
+        }
+        if (endIndex >= 0) {
+            this.endCell = getCell(row(endIndex), col(endIndex));
+        }
+    }
+
+    /**
+     * number of cells in the maze
+     *
+     * @return
+     */
+    public int size() {
+        return height * width;
+    }
+
+    /**
+     * row-major index of the cell at (h, w)
+     *
+     * @param h
+     * @param w
+     * @return
+     */
+    public int index(int h, int w) {
+        return h * width + w;
+    }
+
+    /**
+     * vertical location of the cell at a row-major index
+     *
+     * @param idx
+     * @return
+     */
+    public int row(int idx) {
+        return idx / width;
+    }
+
+    /**
+     * horizontal location of the cell at a row-major index
+     *
+     * @param idx
+     * @return
+     */
+    public int col(int idx) {
+        return idx % width;
+    }
+
+    /**
+     * the raw cell code at a row-major index
+     *
+     * @param idx
+     * @return
+     */
+    public int code(int idx) {
+        return cells != null ? cells[idx] : cellBuffer.get(idx);
+    }
+
+    /**
+     * checks one or more feature bits of a cell, eg. has(idx, Cell.UP)
+     *
+     * @param idx
+     * @param mask
+     * @return
+     */
+    public boolean has(int idx, int mask) {
+        return (code(idx) & mask) != 0;
+    }
 
-        return dimension;
+    /**
+     * index of the neighbor in the given direction, only meaningful when the cell has an opening that way
+     *
+     * @param idx
+     * @param dir a direction ordinal, see Cell.DIR_UP
+     * @return
+     */
+    public int neighbor(int idx, int dir) {
+        switch (dir) {
+            case Cell.DIR_UP:
+                return idx - width;
+            case Cell.DIR_RIGHT:
+                return idx + 1;
+            case Cell.DIR_DOWN:
+                return idx + width;
+            default:
+                return idx - 1;
+        }
     }
 
+    /**
+     * creates a view object for a single cell
+     *
+     * @param h
+     * @param w
+     * @return
+     */
+    public Cell getCell(int h, int w) {
+        return new Cell(code(index(h, w)), h, w);
+    }
 
     /**
-     * separates the dimensions from the structure from the maze compact representation
+     * the maze with its corridors contracted (see JunctionGraph), built on the first call and kept until the next edit
      *
-     * @param compactMaze
      * @return
      */
-    private String parseDims(String compactMaze) {
-        String[] output = compactMaze.split("-");
-        String dims = output[0];
-        return dims;
+    JunctionGraph junctions() {
+        if (junctions == null) {
+            junctions = JunctionGraph.build(this);
+        }
+        return junctions;
     }
 
     /**
-     * parses the structure of the maze itself
+     * finds what the connected components say about the start and the end (see Connectivity) and keeps it until the
+     * next edit: from then on a solve answers "no path found" without a search when the end is apart from the start
+     * or can not be reached with one life without stepping on a mine, and the lives aware methods search a single
+     * layer when no mine is in reach. Finding them is a pass over every cell, about as much as a search, so this only
+     * pays off for a maze that is solved more than once (eg. with other lives) or is expected to have no path.
      *
-     * @param compactMaze
+     * not thread safe, index a maze before it is shared.
+     */
+    public void indexConnectivity() {
+        connectivity = startIndex >= 0 && endIndex >= 0 ? Connectivity.build(this) : null;
+    }
+
+    /**
+     * what indexConnectivity found
+     *
+     * @return null when it was not called since the last edit
+     */
+    Connectivity connectivity() {
+        return connectivity;
+    }
+
+    /**
+     * changes the code of one cell and keeps the rest of the maze consistent with it: every opening is mirrored on the
+     * neighbor it leads to (an opening added here opens the neighbor's wall too, a removed one closes it), openings off
+     * the grid are dropped, and a START or END bit moves the start or end to this cell, taking the bit off the old
+     * one. Taking the START or END bit off the current start or end leaves the maze without one.
+     *
+     * @param idx
+     * @param code
+     */
+    public void setCode(int idx, int code) {
+        if (cells == null) {
+            // the buffer may be a read only mapping, edits go to a copy on the heap
+            byte[] copy = new byte[size()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = cellBuffer.get(i);
+            }
+            cells = copy;
+            cellBuffer = null;
+        }
+        int h = row(idx);
+        int w = col(idx);
+        if (h == 0) code &= ~Cell.UP;
+        if (h == height - 1) code &= ~Cell.DOWN;
+        if (w == 0) code &= ~Cell.LEFT;
+        if (w == width - 1) code &= ~Cell.RIGHT;
+        for (int dir = 0; dir < 4; dir++) {
+            if (!onGrid(h, w, dir)) {
+                continue;
+            }
+            int next = neighbor(idx, dir);
+            int back = 1 << Cell.opposite(dir);
+            if ((code & (1 << dir)) != 0) {
+                cells[next] |= back;
+            } else {
+                cells[next] &= ~back;
+            }
+        }
+        if ((code & Cell.START) != 0 && startIndex != idx) {
+            if (startIndex >= 0) {
+                cells[startIndex] &= ~Cell.START;
+            }
+            startIndex = idx;
+        } else if ((code & Cell.START) == 0 && startIndex == idx) {
+            startIndex = -1;
+        }
+        if ((code & Cell.END) != 0 && endIndex != idx) {
+            if (endIndex >= 0) {
+                cells[endIndex] &= ~Cell.END;
+            }
+            endIndex = idx;
+        } else if ((code & Cell.END) == 0 && endIndex == idx) {
+            endIndex = -1;
+        }
+        cells[idx] = (byte) code;
+        junctions = null;
+        connectivity = null;
+        // the views are snapshots, the edit may have changed either of them
+        startCell = startIndex >= 0 ? getCell(row(startIndex), col(startIndex)) : null;
+        endCell = endIndex >= 0 ? getCell(row(endIndex), col(endIndex)) : null;
+    }
+
+    /**
+     * opens or closes the wall on one side of a cell, and the matching wall of the neighbor
+     *
+     * @param idx
+     * @param dir a direction ordinal, see Cell.DIR_UP
+     * @param open
+     */
+    public void setWall(int idx, int dir, boolean open) {
+        int code = code(idx);
+        setCode(idx, open ? code | (1 << dir) : code & ~(1 << dir));
+    }
+
+    /**
+     * puts a mine on a cell or clears it
+     *
+     * @param idx
+     * @param mine
+     */
+    public void setMine(int idx, boolean mine) {
+        int code = code(idx);
+        setCode(idx, mine ? code | Cell.MINE : code & ~Cell.MINE);
+    }
+
+    /**
+     * whether the cell at (h, w) has a neighbor in the given direction
+     *
+     * @param h
+     * @param w
+     * @param dir
      * @return
      */
-    private Cell[][] parseStructure(String compactMaze){
-        String[] output = compactMaze.split("-");
-        String stringArr = output[1];
-        stringArr = stringArr.replaceAll("\\[", "").replaceAll("\\]","");
-        String[] stringCellValues = stringArr.split(",");
-        Cell[][] cells = new Cell[height][width];
+    private boolean onGrid(int h, int w, int dir) {
+        switch (dir) {
+            case Cell.DIR_UP:
+                return h > 0;
+            case Cell.DIR_RIGHT:
+                return w < width - 1;
+            case Cell.DIR_DOWN:
+                return h < height - 1;
+            default:
+                return w > 0;
+        }
+    }
+
+    /**
+     * takes over a packed row-major cell array and locates the starting and ending cells in it
+     *
+     * @param height
+     * @param width
+     * @param cells
+     */
+    void setCells(int height, int width, byte[] cells) {
+        this.height = height;
+        this.width = width;
+        this.cells = cells;
         int idx = 0;
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
-                cells[i][j] = new Cell(Integer.parseInt(stringCellValues[idx]),i,j);
+                int code = cells[idx];
+                // openings on the outer boundary lead nowhere, drop them so the solvers never step off the grid
+                if (i == 0) code &= ~Cell.UP;
+                if (i == height - 1) code &= ~Cell.DOWN;
+                if (j == 0) code &= ~Cell.LEFT;
+                if (j == width - 1) code &= ~Cell.RIGHT;
+                cells[idx] = (byte) code;
                 // check for the starting and ending cells/locations
-                if (cells[i][j].features.containsKey("START")) {
-                    this.startCell = cells[i][j];
+                if ((code & Cell.START) != 0) {
+                    this.startIndex = idx;
+                    this.startCell = new Cell(code, i, j);
                 }
-                if (cells[i][j].features.containsKey("END")) {
-                    this.endCell = cells[i][j];
+                if ((code & Cell.END) != 0) {
+                    this.endIndex = idx;
+                    this.endCell = new Cell(code, i, j);
                 }
                 idx++;
             }
         }
-        return cells;
     }
 
     /**
@@ -114,18 +379,18 @@ public class Maze {
                 // left wall
                 if (j == 0) {
                     System.out.print("| ");
-                } else if (structure[i][j].features.get("LEFT") == null) {
+                } else if (!has(index(i, j), Cell.LEFT)) {
                     System.out.print("| ");
                 } else {
                     System.out.print("  ");
                 }
 
                 // cell content, if any
-                if (structure[i][j].features.get("MINE") != null) {
+                if (has(index(i, j), Cell.MINE)) {
                     System.out.print("  * ");
-                } else if (structure[i][j].features.get("END") != null) {
+                } else if (has(index(i, j), Cell.END)) {
                     System.out.print("  E ");
-                } else if (structure[i][j].features.get("START") != null) {
+                } else if (has(index(i, j), Cell.START)) {
                     System.out.print("  S ");
                 } else {
                     System.out.print("    ");
@@ -142,7 +407,7 @@ public class Maze {
             // print bottom wall
             System.out.print('+');
             for (int j = 0; j < width; j++) {
-                if (structure[i][j].features.get("DOWN") == null) {
+                if (!has(index(i, j), Cell.DOWN)) {
                     System.out.print(" - - - +");
                 } else {
                     System.out.print("       +");
@@ -160,7 +425,7 @@ public class Maze {
     public void printStructure() {
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
-                System.out.print(structure[i][j].code + " ");
+                System.out.print(code(index(i, j)) + " ");
             }
             System.out.println();
         }
@@ -0,0 +1,125 @@
+package sparkcog.demo;
+
+/**
+ * converts maze files between the compact text format (one maze per line) and the binary format (see
+ * BinaryMazeFormat). Both directions stream, one maze at a time.
+ *
+ * usage: MazeConverter --to-binary <text file> <binary file>
+ *        MazeConverter --to-text <binary file> <text file>
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class MazeConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.out.println("usage: MazeConverter --to-binary|--to-text <input> <output>");
+            return;
+        }
+        try {
+            switch (args[0]) {
+                case "--to-binary":
+                    toBinary(Paths.get(args[1]), Paths.get(args[2]));
+                    break;
+                case "--to-text":
+                    toText(Paths.get(args[1]), Paths.get(args[2]));
+                    break;
+                default:
+                    System.out.println("unknown conversion " + args[0]);
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * converts a text maze file to the binary format
+     *
+     * @param text
+     * @param binary
+     * @return the number of mazes converted
+     * @throws IOException
+     */
+    public static int toBinary(Path text, Path binary) throws IOException {
+        int count = 0;
+        try (BufferedReader in = Files.newBufferedReader(text, StandardCharsets.US_ASCII);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(binary), 1 << 16)) {
+            MazeParser parser = new MazeParser(in);
+            for (Maze maze = parser.next(); maze != null; maze = parser.next()) {
+                BinaryMazeFormat.write(maze, out);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * converts a binary maze file to the text format
+     *
+     * @param binary
+     * @param text
+     * @return the number of mazes converted
+     * @throws IOException
+     */
+    public static int toText(Path binary, Path text) throws IOException {
+        try (BinaryMazeFile in = new BinaryMazeFile(binary);
+             Writer out = new BufferedWriter(Files.newBufferedWriter(text, StandardCharsets.US_ASCII), 1 << 16)) {
+            for (int i = 0; i < in.size(); i++) {
+                writeText(in.get(i), out);
+                out.write('\n');
+            }
+            return in.size();
+        }
+    }
+
+    /**
+     * writes the compact text representation of a maze, (h,w)-[c,c,c,...]
+     *
+     * @param maze
+     * @param out
+     * @throws IOException
+     */
+    public static void writeText(Maze maze, Writer out) throws IOException {
+        out.write('(');
+        out.write(Integer.toString(maze.height));
+        out.write(',');
+        out.write(Integer.toString(maze.width));
+        out.write(")-[");
+        for (int idx = 0; idx < maze.size(); idx++) {
+            if (idx > 0) {
+                out.write(',');
+            }
+            writeCode(maze.code(idx), out);
+        }
+        out.write(']');
+    }
+
+    /**
+     * writes a cell code (0 to 127) without going through a string
+     *
+     * @param code
+     * @param out
+     * @throws IOException
+     */
+    static void writeCode(int code, Writer out) throws IOException {
+        if (code >= 100) {
+            out.write('0' + code / 100);
+        }
+        if (code >= 10) {
+            out.write('0' + code / 10 % 10);
+        }
+        out.write('0' + code % 10);
+    }
+}
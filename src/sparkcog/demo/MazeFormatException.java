@@ -0,0 +1,20 @@
+package sparkcog.demo;
+
+/**
+ * thrown when the compact text representation of a maze is malformed, carries the line and the character position
+ * (both 1 based) where the parser gave up
+ */
+
+public class MazeFormatException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public final long line;                 // line of the input, 1 based
+    public final long position;             // character within the line, 1 based
+
+    public MazeFormatException(String message, long line, long position) {
+        super("line " + line + ", position " + position + ": " + message);
+        this.line = line;
+        this.position = position;
+    }
+}
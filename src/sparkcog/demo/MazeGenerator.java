@@ -0,0 +1,333 @@
+package sparkcog.demo;
+
+/**
+ * generates synthetic mazes in the cell code encoding of Cell, with every opening marked on both sides of the wall.
+ * Mazes are produced one row at a time and written out as soon as a row is complete, only a few arrays of the maze
+ * width are kept, so even 20,000x20,000 mazes can be written to a text or binary file without holding the grid, and
+ * binary files of mazes with billions of cells can be written for TiledMaze.
+ *
+ * styles:
+ *   PERFECT  - exactly one path between any two cells, carved with Eller's algorithm (the row by row relative of
+ *              Kruskal's algorithm, which is what makes streaming possible)
+ *   BRAIDED  - a perfect maze with extra walls knocked down with probability loopChance, so there are loops
+ *   OPEN     - open rooms, every inner wall is present with probability wallDensity only
+ *
+ * the start and end go to opposite corners or to random cells, and every other cell holds a mine with probability
+ * mineDensity. The same settings and seed always produce the same maze.
+ *
+ * usage: MazeGenerator <height> <width> [--style perfect|braided|open] [--seed n] [--mines density]
+ *                      [--loops chance] [--walls density] [--random-ends] [--count n] [--binary] [--out file]
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class MazeGenerator {
+
+    public enum Style { PERFECT, BRAIDED, OPEN }
+
+    public final int height;
+    public final int width;
+    public long seed;
+    public Style style = Style.PERFECT;
+    public double loopChance = 0.1;         // BRAIDED: chance to knock down a wall that is still standing
+    public double wallDensity = 0.2;        // OPEN: chance for an inner wall to be present
+    public double mineDensity = 0.0;        // chance for a cell other than start and end to hold a mine
+    public boolean randomEnds = false;      // start and end on random cells instead of opposite corners
+
+    public MazeGenerator(int height, int width, long seed) {
+        // a start and an end need two cells
+        if (height < 1 || width < 1 || (long) height * width < 2) {
+            throw new IllegalArgumentException("can not generate a " + height + "x" + width + " maze");
+        }
+        this.height = height;
+        this.width = width;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        MazeGenerator generator = new MazeGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]), 1);
+        int count = 1;
+        boolean binary = false;
+        String outFile = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--style":
+                    generator.style = Style.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--seed":
+                    generator.seed = Long.parseLong(args[++i]);
+                    break;
+                case "--mines":
+                    generator.mineDensity = Double.parseDouble(args[++i]);
+                    break;
+                case "--loops":
+                    generator.loopChance = Double.parseDouble(args[++i]);
+                    break;
+                case "--walls":
+                    generator.wallDensity = Double.parseDouble(args[++i]);
+                    break;
+                case "--random-ends":
+                    generator.randomEnds = true;
+                    break;
+                case "--count":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "--binary":
+                    binary = true;
+                    break;
+                case "--out":
+                    outFile = args[++i];
+                    break;
+                default:
+                    System.out.println("unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        OutputStream out = outFile == null ? System.out : Files.newOutputStream(Paths.get(outFile));
+        try (OutputStream buffered = new BufferedOutputStream(out, 1 << 16)) {
+            Writer text = new BufferedWriter(new OutputStreamWriter(buffered, StandardCharsets.US_ASCII), 1 << 16);
+            long firstSeed = generator.seed;
+            for (int i = 0; i < count; i++) {
+                // consecutive mazes of one run get consecutive seeds
+                generator.seed = firstSeed + i;
+                if (binary) {
+                    generator.writeBinary(buffered);
+                } else {
+                    generator.writeText(text);
+                    text.write('\n');
+                }
+            }
+            text.flush();
+        }
+    }
+
+    /**
+     * generates the maze in memory
+     *
+     * @return
+     */
+    public Maze generate() {
+        if ((long) height * width > BinaryMazeFormat.MAX_HEAP_CELLS) {
+            throw new IllegalStateException(height + "x" + width + " is too large for the heap, write it instead");
+        }
+        final byte[] cells = new byte[height * width];
+        try {
+            generate((r, row) -> System.arraycopy(row, 0, cells, r * width, width));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new Maze(height, width, cells);
+    }
+
+    /**
+     * writes the maze in the compact text format, without a trailing line break
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeText(final Writer out) throws IOException {
+        out.write('(');
+        out.write(Integer.toString(height));
+        out.write(',');
+        out.write(Integer.toString(width));
+        out.write(")-[");
+        generate((r, row) -> {
+            for (int c = 0; c < width; c++) {
+                if (r > 0 || c > 0) {
+                    out.write(',');
+                }
+                MazeConverter.writeCode(row[c], out);
+            }
+        });
+        out.write(']');
+    }
+
+    /**
+     * writes the maze as one record of the binary format (see BinaryMazeFormat)
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        long[] ends = ends(new SplittableRandom(seed));
+        BinaryMazeFormat.writeHeader(data, height, width, ends[0], ends[1]);
+        generate((r, row) -> data.write(row, 0, width));
+        data.flush();
+    }
+
+    /**
+     * receives the finished rows of the maze, top to bottom. The row array is reused for the next row.
+     */
+    interface RowSink {
+        void row(int r, byte[] row) throws IOException;
+    }
+
+    /**
+     * picks the start and end cells, always the first thing drawn from the random generator
+     *
+     * @param random
+     * @return {start index, end index}
+     */
+    private long[] ends(SplittableRandom random) {
+        long n = (long) height * width;
+        if (!randomEnds) {
+            return new long[] {0, n - 1};
+        }
+        boolean small = n <= Integer.MAX_VALUE;
+        long start = small ? random.nextInt((int) n) : random.nextLong(n);
+        long end = small ? random.nextInt((int) n - 1) : random.nextLong(n - 1);
+        if (end >= start) {
+            end++;
+        }
+        return new long[] {start, end};
+    }
+
+    /**
+     * produces the maze row by row
+     *
+     * @param sink
+     * @throws IOException
+     */
+    void generate(RowSink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] ends = ends(random);
+        byte[] row = new byte[width];
+        boolean[] openAbove = new boolean[width];   // the row above opened down into this column
+        boolean[] openBelow = new boolean[width];   // this row opens down in this column
+        int[] set = new int[width];                 // Eller's set of every cell in the row, ids below width
+        int[] parent = new int[width];              // union find over the set ids of the current row
+        int[] last = new int[width];                // last column of every set in the row
+        boolean[] setGoesDown = new boolean[width]; // whether a set already opens into the next row
+        boolean[] used = new boolean[width];        // set ids carried into the next row
+        for (int c = 0; c < width; c++) {
+            set[c] = c;
+        }
+
+        for (int r = 0; r < height; r++) {
+            boolean lastRow = r == height - 1;
+            for (int c = 0; c < width; c++) {
+                row[c] = openAbove[c] ? (byte) Cell.UP : 0;
+                openBelow[c] = false;
+            }
+
+            if (style == Style.OPEN) {
+                for (int c = 0; c < width - 1; c++) {
+                    if (random.nextDouble() >= wallDensity) {
+                        openRight(row, c);
+                    }
+                }
+                if (!lastRow) {
+                    for (int c = 0; c < width; c++) {
+                        openBelow[c] = random.nextDouble() >= wallDensity;
+                    }
+                }
+            } else {
+                boolean braided = style == Style.BRAIDED;
+                // join neighbors of different sets at random, all of them on the last row
+                for (int i = 0; i < width; i++) {
+                    parent[i] = i;
+                }
+                for (int c = 0; c < width - 1; c++) {
+                    int a = find(parent, set[c]);
+                    int b = find(parent, set[c + 1]);
+                    boolean open = a != b && (lastRow || random.nextBoolean());
+                    if (!open && braided && random.nextDouble() < loopChance) {
+                        open = true;
+                    }
+                    if (open) {
+                        openRight(row, c);
+                        parent[b] = a;
+                    }
+                }
+                for (int c = 0; c < width; c++) {
+                    set[c] = find(parent, set[c]);
+                }
+
+                // every set continues into the next row through at least one opening
+                if (!lastRow) {
+                    for (int c = 0; c < width; c++) {
+                        last[set[c]] = c;
+                        setGoesDown[set[c]] = false;
+                    }
+                    for (int c = 0; c < width; c++) {
+                        int s = set[c];
+                        boolean down = random.nextBoolean();
+                        if (!down && c == last[s] && !setGoesDown[s]) {
+                            down = true;
+                        }
+                        if (!down && braided && random.nextDouble() < loopChance) {
+                            down = true;
+                        }
+                        if (down) {
+                            setGoesDown[s] = true;
+                            openBelow[c] = true;
+                        }
+                    }
+                    // cells entered from above keep their set, the others start a set of their own
+                    Arrays.fill(used, false);
+                    for (int c = 0; c < width; c++) {
+                        if (openBelow[c]) {
+                            used[set[c]] = true;
+                        }
+                    }
+                    int free = 0;
+                    for (int c = 0; c < width; c++) {
+                        if (!openBelow[c]) {
+                            while (used[free]) {
+                                free++;
+                            }
+                            set[c] = free;
+                            used[free] = true;
+                        }
+                    }
+                }
+            }
+
+            long base = (long) r * width;
+            for (int c = 0; c < width; c++) {
+                if (openBelow[c]) {
+                    row[c] |= Cell.DOWN;
+                }
+                long idx = base + c;
+                if (idx == ends[0]) {
+                    row[c] |= Cell.START;
+                } else if (idx == ends[1]) {
+                    row[c] |= Cell.END;
+                } else if (mineDensity > 0 && random.nextDouble() < mineDensity) {
+                    row[c] |= Cell.MINE;
+                }
+            }
+            sink.row(r, row);
+
+            boolean[] swap = openAbove;
+            openAbove = openBelow;
+            openBelow = swap;
+        }
+    }
+
+    private static void openRight(byte[] row, int c) {
+        row[c] |= Cell.RIGHT;
+        row[c + 1] |= Cell.LEFT;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+}
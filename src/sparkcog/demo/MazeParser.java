@@ -0,0 +1,239 @@
+package sparkcog.demo;
+
+/**
+ * single pass parser for the compact text representation of a maze, (h,w)-[c,c,c,...]
+ *
+ * the input is read one character at a time straight into the packed cell array of the maze, no intermediate strings
+ * or arrays are created. The same parser reads from a CharSequence, a Reader or a ByteBuffer of ASCII text, and a
+ * parser can be asked for maze after maze when the input holds one maze per line. Malformed input fails with a
+ * MazeFormatException that points at the offending character.
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+public final class MazeParser {
+
+    private static final int EOF = -1;
+    private static final int MAX_CELLS = Integer.MAX_VALUE - 8;    // largest array the JVM reliably hands out
+
+    private final CharSequence chars;       // source when parsing text in memory
+    private final Reader reader;            // source when parsing a character stream
+    private final ByteBuffer bytes;         // source when parsing ASCII bytes, read from position to limit
+    private final char[] buffer;            // read buffer for the reader
+    private int bufferPos;
+    private int bufferEnd;
+    private int charPos;                    // next index in chars
+
+    private int pushedBack = EOF - 1;       // a character read one too far, or nothing
+    private long line = 1;                  // line of the last character read
+    private long column;                    // position of the last character read within its line
+    private boolean lineBreak;              // the last character read ended its line
+
+    public MazeParser(CharSequence chars) {
+        this(chars, null, null);
+    }
+
+    public MazeParser(Reader reader) {
+        this(null, reader, null);
+    }
+
+    /**
+     * reads the ASCII text between the position and the limit of the buffer, the position advances as mazes are read
+     *
+     * @param bytes
+     */
+    public MazeParser(ByteBuffer bytes) {
+        this(null, null, bytes);
+    }
+
+    private MazeParser(CharSequence chars, Reader reader, ByteBuffer bytes) {
+        this.chars = chars;
+        this.reader = reader;
+        this.bytes = bytes;
+        this.buffer = reader != null ? new char[8192] : null;
+    }
+
+    /**
+     * parses a single maze
+     *
+     * @param compactMaze
+     * @return
+     */
+    public static Maze parse(CharSequence compactMaze) {
+        return new MazeParser(compactMaze).next();
+    }
+
+    /**
+     * parses the next maze of the input, blank lines in front of it are skipped
+     *
+     * @return the maze, or null when the input is exhausted
+     */
+    public Maze next() {
+        if (!skipBlankLines()) {
+            return null;
+        }
+        Maze maze = new Maze(0, 0, new byte[0]);
+        readMaze(maze);
+        return maze;
+    }
+
+    /**
+     * parses the next maze of the input into an existing maze object
+     *
+     * @param maze
+     */
+    void readInto(Maze maze) {
+        if (!skipBlankLines()) {
+            throw unexpected("a maze", read());
+        }
+        readMaze(maze);
+    }
+
+    private void readMaze(Maze maze) {
+        expect('(');
+        int height = readInt();
+        expect(',');
+        int width = readInt();
+        expect(')');
+        expect('-');
+        expect('[');
+        if (height < 1 || width < 1) {
+            throw error("maze dimensions must be positive");
+        }
+        if ((long) height * width > MAX_CELLS) {
+            throw error("maze of " + height + "x" + width + " cells is too large");
+        }
+
+        byte[] cells = new byte[height * width];
+        for (int idx = 0; idx < cells.length; idx++) {
+            if (idx > 0) {
+                expect(',');
+            }
+            int code = readInt();
+            if (code > 127) {
+                throw error("cell code " + code + " is not a 7-bit code");
+            }
+            cells[idx] = (byte) code;
+        }
+        int c = read();
+        if (c == ',') {
+            throw error("more cells than the " + height + "x" + width + " dimensions allow");
+        }
+        if (c != ']') {
+            throw unexpected("']'", c);
+        }
+        // the maze has to end its line
+        c = read();
+        if (c == '\r') {
+            c = read();
+        }
+        if (c != '\n' && c != EOF) {
+            throw unexpected("the end of the line", c);
+        }
+        maze.setCells(height, width, cells);
+    }
+
+    /**
+     * skips line breaks and reports whether anything is left to read
+     *
+     * @return
+     */
+    private boolean skipBlankLines() {
+        int c = read();
+        while (c == '\n' || c == '\r') {
+            c = read();
+        }
+        if (c == EOF) {
+            return false;
+        }
+        pushBack(c);
+        return true;
+    }
+
+    private int readInt() {
+        int c = read();
+        if (c < '0' || c > '9') {
+            throw unexpected("a digit", c);
+        }
+        int value = 0;
+        do {
+            if (value > (Integer.MAX_VALUE - 9) / 10) {
+                throw error("number is too large");
+            }
+            value = value * 10 + (c - '0');
+            c = read();
+        } while (c >= '0' && c <= '9');
+        pushBack(c);
+        return value;
+    }
+
+    private void expect(char expected) {
+        int c = read();
+        if (c != expected) {
+            throw unexpected("'" + expected + "'", c);
+        }
+    }
+
+    private int read() {
+        int c;
+        if (pushedBack >= EOF) {
+            c = pushedBack;
+            pushedBack = EOF - 1;
+        } else if (bytes != null) {
+            c = bytes.hasRemaining() ? bytes.get() & 0xff : EOF;
+        } else if (chars != null) {
+            c = charPos < chars.length() ? chars.charAt(charPos++) : EOF;
+        } else {
+            c = readBuffered();
+        }
+        // a line break still belongs to the line it ends, the next line starts with the character after it
+        if (lineBreak) {
+            line++;
+            column = 0;
+        }
+        column++;
+        lineBreak = c == '\n';
+        return c;
+    }
+
+    private int readBuffered() {
+        if (bufferPos == bufferEnd) {
+            try {
+                bufferEnd = reader.read(buffer, 0, buffer.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bufferPos = 0;
+            if (bufferEnd <= 0) {
+                bufferEnd = 0;
+                return EOF;
+            }
+        }
+        return buffer[bufferPos++];
+    }
+
+    /**
+     * un-reads the last character, only one character can be pushed back at a time
+     *
+     * @param c
+     */
+    private void pushBack(int c) {
+        pushedBack = c;
+        column--;
+        lineBreak = false;
+    }
+
+    private MazeFormatException error(String message) {
+        return new MazeFormatException(message, line, column);
+    }
+
+    private MazeFormatException unexpected(String expected, int found) {
+        String what = found == EOF ? "the end of the input"
+                : found == '\n' || found == '\r' ? "the end of the line"
+                : "'" + (char) found + "'";
+        return error("expected " + expected + " but found " + what);
+    }
+}
@@ -0,0 +1,446 @@
+package sparkcog.demo;
+
+/**
+ * answers many shortest path questions between arbitrary cells of one maze. The maze is preprocessed once into a
+ * landmark distance index (ALT: A*, landmarks and the triangle inequality), every query is then an A* search guided
+ * by that index.
+ *
+ * preprocessing picks the landmarks by farthest point selection: the first one is the cell farthest from the start of
+ * the maze, every next one the cell farthest from all landmarks picked so far. A BFS from each landmark records its
+ * distance to every cell, and a BFS backwards over the openings its distance from every cell (a maze file may have one
+ * way openings, on a maze without them both are the same and kept once). For a query towards t the triangle inequality
+ * gives d(L, t) - d(L, v) <= d(v, t) and d(v, L) - d(t, L) <= d(v, t) for every landmark L, the largest of those
+ * bounds (and the Manhattan distance) is the heuristic. A bound is left out where a cell was not reached. Each bound
+ * changes by at most 1 per move along any path that can still get to t, so the heuristic is consistent and the open
+ * list can be a bucket queue like in AStarSearch. Landmarks near the ends of long corridors make the bound exact along
+ * most of a perfect maze, so queries expand little more than the path itself.
+ *
+ * the same distances answer some queries without a search: a landmark that reaches the source but not the target, or
+ * is reached from the target but not from the source, proves there is no path.
+ *
+ * like AStarSearch the router ignores mines, it is about the layout. Results are in the same format as the paths
+ * printed by MazeSolver. The index is read only after construction and can be shared through MazeRouter(MazeRouter),
+ * but each router has its own search memory and must stay confined to one thread.
+ *
+ * usage: MazeRouter <file> [--landmarks n] [--queries n] [--seed n]
+ *        routes random pairs of cells through the first maze of the file and prints the paths
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MazeRouter {
+
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    private final Maze maze;
+    private final int[] landmarks;          // landmark cells
+    private final int[][] distances;        // distances[l][idx], BFS distance from landmark l, -1 if unreachable
+    private final int[][] reverse;          // reverse[l][idx], distance from idx to landmark l, -1 if unreachable
+    private final int[] target;             // distance of each landmark to the current query target
+    private final int[] targetReverse;      // distance of the current query target to each landmark
+    private final SolverScratch scratch = new SolverScratch();
+
+    /**
+     * preprocesses the maze with the default number of landmarks
+     *
+     * @param maze
+     */
+    public MazeRouter(Maze maze) {
+        this(maze, DEFAULT_LANDMARKS);
+    }
+
+    /**
+     * preprocesses the maze, a BFS over the whole maze per landmark (two when the maze has one way openings)
+     *
+     * @param maze
+     * @param numLandmarks
+     */
+    public MazeRouter(Maze maze, int numLandmarks) {
+        if (numLandmarks < 1) {
+            throw new IllegalArgumentException("at least one landmark is needed");
+        }
+        this.maze = maze;
+        int n = maze.size();
+        int[] picked = new int[numLandmarks];
+        int[][] dist = new int[numLandmarks][];
+        // closest landmark distance of every cell, the next landmark is the cell where it is largest
+        int[] nearest = new int[n];
+        int origin = maze.startIndex >= 0 ? maze.startIndex : 0;
+        int first = farthest(bfs(maze, origin, new int[n]));
+        int count = 0;
+        int next = first;
+        while (count < numLandmarks && next >= 0) {
+            picked[count] = next;
+            dist[count] = bfs(maze, next, new int[n]);
+            if (count == 0) {
+                System.arraycopy(dist[0], 0, nearest, 0, n);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    if (dist[count][i] < nearest[i]) {
+                        nearest[i] = dist[count][i];
+                    }
+                }
+            }
+            count++;
+            next = farthest(nearest);
+            // every reachable cell is a landmark already
+            if (next >= 0 && nearest[next] == 0) {
+                next = -1;
+            }
+        }
+        this.landmarks = Arrays.copyOf(picked, count);
+        this.distances = Arrays.copyOf(dist, count);
+        if (symmetric(maze)) {
+            this.reverse = distances;
+        } else {
+            this.reverse = new int[count][];
+            for (int l = 0; l < count; l++) {
+                reverse[l] = reverseBfs(maze, landmarks[l], new int[n]);
+            }
+        }
+        this.target = new int[count];
+        this.targetReverse = new int[count];
+    }
+
+    /**
+     * a router for another thread that shares the landmark index of the given one
+     *
+     * @param other
+     */
+    public MazeRouter(MazeRouter other) {
+        this.maze = other.maze;
+        this.landmarks = other.landmarks;
+        this.distances = other.distances;
+        this.reverse = other.reverse;
+        this.target = new int[landmarks.length];
+        this.targetReverse = new int[landmarks.length];
+    }
+
+    public static void main(String[] args) throws IOException {
+        int numLandmarks = DEFAULT_LANDMARKS;
+        int queries = 10;
+        long seed = 1;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--landmarks":
+                    numLandmarks = Integer.parseInt(args[++i]);
+                    break;
+                case "--queries":
+                    queries = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.out.println("unknown option " + args[i]);
+                    return;
+            }
+        }
+        Maze maze;
+        try (Reader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.US_ASCII)) {
+            maze = new MazeParser(in).next();
+        }
+        long begin = System.nanoTime();
+        MazeRouter router = new MazeRouter(maze, numLandmarks);
+        System.err.println("preprocessed " + maze.height + "x" + maze.width + " with " + router.landmarks.length
+                + " landmarks in " + (System.nanoTime() - begin) / 1000000 + " ms");
+        Random random = new Random(seed);
+        long expanded = 0;
+        begin = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            int from = random.nextInt(maze.size());
+            int to = random.nextInt(maze.size());
+            System.out.println("(" + maze.row(from) + "," + maze.col(from) + ") -> (" + maze.row(to) + ","
+                    + maze.col(to) + ") " + router.route(from, to));
+            expanded += router.getNodesExpanded();
+        }
+        System.err.println(queries + " queries in " + (System.nanoTime() - begin) / 1000000 + " ms, "
+                + expanded + " cells expanded");
+    }
+
+    /**
+     * number of landmarks in the index
+     *
+     * @return
+     */
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * number of cells the last query took off its queue
+     *
+     * @return
+     */
+    public long getNodesExpanded() {
+        return scratch.expanded;
+    }
+
+    /**
+     * shortest path between two cells given by their locations
+     *
+     * @param fromH
+     * @param fromW
+     * @param toH
+     * @param toW
+     * @return the directions in the format of MazeSolver, or "no path found"
+     */
+    public String route(int fromH, int fromW, int toH, int toW) {
+        return route(maze.index(fromH, fromW), maze.index(toH, toW));
+    }
+
+    /**
+     * shortest path between two cells given by their row-major indices
+     *
+     * @param from
+     * @param to
+     * @return the directions in the format of MazeSolver, or "no path found"
+     */
+    public String route(int from, int to) {
+        if (!search(from, to)) {
+            return MazeSolver.NO_PATH;
+        }
+        walkParents(from, to);
+        return MazeSolver.pathText(scratch);
+    }
+
+    /**
+     * length of a shortest path between two cells
+     *
+     * @param from
+     * @param to
+     * @return -1 if there is no path
+     */
+    public int distance(int from, int to) {
+        return search(from, to) ? scratch.distance[to] : -1;
+    }
+
+    /**
+     * A* from one cell to another with the landmark heuristic, the parents are left in the scratch
+     *
+     * @param from
+     * @param to
+     * @return false if there is no path
+     */
+    private boolean search(int from, int to) {
+        int n = maze.size();
+        if (from < 0 || from >= n || to < 0 || to >= n) {
+            throw new IndexOutOfBoundsException("cells " + from + " and " + to + " of " + n);
+        }
+        SolverScratch s = scratch;
+        s.prepare(n);
+        for (int l = 0; l < landmarks.length; l++) {
+            // a landmark reaching the source reaches all it can reach, one that the target reaches is reached from
+            // everything that reaches the target
+            if ((distances[l][from] >= 0 && distances[l][to] < 0) || (reverse[l][to] >= 0 && reverse[l][from] < 0)) {
+                return false;
+            }
+            target[l] = distances[l][to];
+            targetReverse[l] = reverse[l][to];
+        }
+        s.prepareParents(n);
+        int generation = s.generation;
+        int width = maze.width;
+        int toRow = maze.row(to);
+        int toCol = maze.col(to);
+        int[] g = s.distance;
+        int[] open = s.seen;
+        int[] closed = s.marks;
+        BucketQueue buckets = s.buckets;
+        // g and h are both below the number of cells
+        buckets.reset((int) Math.min(2L * n, Integer.MAX_VALUE - 8));
+
+        g[from] = 0;
+        open[from] = generation;
+        buckets.add(estimate(from, toRow, toCol), from);
+        while (!buckets.isEmpty()) {
+            int idx = buckets.remove();
+            if (closed[idx] == generation) {
+                continue;
+            }
+            closed[idx] = generation;
+            s.expanded++;
+            if (idx == to) {
+                return true;
+            }
+            int code = maze.code(idx);
+            int nextG = g[idx] + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) == 0) {
+                    continue;
+                }
+                int next = maze.neighbor(idx, dir);
+                if (closed[next] == generation || (open[next] == generation && g[next] <= nextG)) {
+                    continue;
+                }
+                open[next] = generation;
+                g[next] = nextG;
+                PackedBits.setPair(s.parents, next, dir);
+                buckets.add(nextG + estimate(next, toRow, toCol), next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * lower bound on the distance from a cell to the query target
+     *
+     * @param idx
+     * @param toRow
+     * @param toCol
+     * @return
+     */
+    private int estimate(int idx, int toRow, int toCol) {
+        int row = idx / maze.width;
+        int h = Math.abs(row - toRow) + Math.abs(idx - row * maze.width - toCol);
+        for (int l = 0; l < target.length; l++) {
+            int from = distances[l][idx];
+            if (from >= 0 && target[l] - from > h) {
+                h = target[l] - from;
+            }
+            int to = reverse[l][idx];
+            if (to >= 0 && targetReverse[l] >= 0 && to - targetReverse[l] > h) {
+                h = to - targetReverse[l];
+            }
+        }
+        return h;
+    }
+
+    /**
+     * follows the parent directions from the target back to the source, recording each step
+     *
+     * @param from
+     * @param to
+     */
+    private void walkParents(int from, int to) {
+        int idx = to;
+        while (idx != from) {
+            int dir = PackedBits.getPair(scratch.parents, idx);
+            scratch.addStep(dir);
+            idx = maze.neighbor(idx, Cell.opposite(dir));
+        }
+    }
+
+    /**
+     * plain BFS distances from one cell to every cell, mines included
+     *
+     * @param maze
+     * @param from
+     * @param dist filled with the distances, -1 where the cell can not be reached
+     * @return dist
+     */
+    private static int[] bfs(Maze maze, int from, int[] dist) {
+        Arrays.fill(dist, -1);
+        IntQueue queue = new IntQueue(1024);
+        dist[from] = 0;
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int idx = queue.remove();
+            int code = maze.code(idx);
+            int nextDist = dist[idx] + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) != 0) {
+                    int next = maze.neighbor(idx, dir);
+                    if (dist[next] < 0) {
+                        dist[next] = nextDist;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * plain BFS distances from every cell to one cell, the openings are followed backwards: a cell is entered from
+     * each neighbor that has an opening towards it
+     *
+     * @param maze
+     * @param to
+     * @param dist filled with the distances, -1 where the cell can not reach to
+     * @return dist
+     */
+    private static int[] reverseBfs(Maze maze, int to, int[] dist) {
+        Arrays.fill(dist, -1);
+        IntQueue queue = new IntQueue(1024);
+        dist[to] = 0;
+        queue.add(to);
+        while (!queue.isEmpty()) {
+            int idx = queue.remove();
+            int nextDist = dist[idx] + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                if (!onGrid(maze, idx, dir)) {
+                    continue;
+                }
+                int prev = maze.neighbor(idx, dir);
+                if (dist[prev] < 0 && maze.has(prev, 1 << Cell.opposite(dir))) {
+                    dist[prev] = nextDist;
+                    queue.add(prev);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * whether a cell has a neighbor in the given direction
+     *
+     * @param maze
+     * @param idx
+     * @param dir
+     * @return
+     */
+    private static boolean onGrid(Maze maze, int idx, int dir) {
+        switch (dir) {
+            case Cell.DIR_UP:
+                return idx >= maze.width;
+            case Cell.DIR_RIGHT:
+                return (idx + 1) % maze.width != 0;
+            case Cell.DIR_DOWN:
+                return idx + maze.width < maze.size();
+            default:
+                return idx % maze.width != 0;
+        }
+    }
+
+    /**
+     * whether every opening of the maze has the matching opening on the other side
+     *
+     * @param maze
+     * @return
+     */
+    private static boolean symmetric(Maze maze) {
+        int n = maze.size();
+        for (int idx = 0; idx < n; idx++) {
+            int code = maze.code(idx);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) != 0 && !maze.has(maze.neighbor(idx, dir), 1 << Cell.opposite(dir))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the reachable cell with the largest distance
+     *
+     * @param dist
+     * @return -1 if no cell can be reached
+     */
+    private static int farthest(int[] dist) {
+        int best = -1;
+        for (int i = 0; i < dist.length; i++) {
+            if (dist[i] >= 0 && (best < 0 || dist[i] > dist[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -8,39 +8,269 @@ package sparkcog.demo;
  * for: SparkCognition test demo
  * this class loads mazes from a file and creates maze objects, the maze objects are then passed on
  * to the Maze Solver class.
+ *
+ * usage: MazeRunner [file] [--lives n] [--method name] [--threads n] [--mmap | --binary] [--cache entries] [--rle]
+ *                   [--metrics file]
+ *
+ * without --threads the mazes are solved one after the other and printed as before. With --threads the file is solved
+ * in batch mode (see BatchSolver), n mazes at a time, and every result is printed on its own line in input order.
+ * --mmap memory maps the file (see MappedMazeFile) instead of reading it into strings, for files larger than the heap.
+ * --binary does the same for a file in the binary format (see BinaryMazeFormat, MazeConverter).
+ * --cache answers mazes that come up again from a SolutionCache of at most that many entries (and a quarter of the
+ * heap), its hit and miss counts are printed to stderr at the end.
+ * --rle writes the paths run length encoded (see PathFormat).
+ * --metrics times parsing and every phase of the solves and writes the histograms and counts as JSON to the file at
+ * the end ("-" for stderr), see SolverMetrics.
 */
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
 import java.util.stream.Stream;
 
 public class MazeRunner {
 
     public static void main(String[] args) {
+        String mazeFile = "../../mazes.txt";
+        String metricsFile = null;
+        boolean mapped = false;
+        boolean binary = false;
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--lives":
+                    options.numLives = Integer.parseInt(args[++i]);
+                    break;
+                case "--method":
+                    options.method = SolveMethod.valueOf(args[++i]);
+                    break;
+                case "--threads":
+                    options.threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--mmap":
+                    mapped = true;
+                    break;
+                case "--binary":
+                    binary = true;
+                    break;
+                case "--cache":
+                    options.cache = new SolutionCache(Integer.parseInt(args[++i]),
+                            Runtime.getRuntime().maxMemory() / 4);
+                    break;
+                case "--rle":
+                    options.format = PathFormat.RUN_LENGTH;
+                    break;
+                case "--metrics":
+                    metricsFile = args[++i];
+                    options.metrics = new SolverMetrics();
+                    break;
+                default:
+                    mazeFile = args[i];
+            }
+        }
+
+        try {
+            if (mapped || binary) {
+                solveMapped(mazeFile, binary, options);
+            } else if (options.threads > 0) {
+                solveBatch(mazeFile, options);
+            } else {
+                solveSequential(mazeFile, options);
+            }
+        } finally {
+            printStats(options, metricsFile);
+        }
+    }
+
+    /**
+     * solves the mazes of the file one after the other, printing each result after an empty line
+     *
+     * @param mazeFile
+     * @param options
+     */
+    private static void solveSequential(String mazeFile, Options options) {
         // try to load the maze file
-        try (Stream<String> mazeStreams = Files.lines(Paths.get("../../mazes.txt")))
+        try (Stream<String> mazeStreams = Files.lines(Paths.get(mazeFile)))
         {
             // a maze solver class to solve each maze object
-            MazeSolver solver = new MazeSolver();
+            MazeSolver solver = options.solver();
+            int numLives = options.numLives;
+            if (options.cache != null) {
+                // the cache wants the raw text, mazes it already knows are never parsed
+                for (String s : (Iterable<String>) mazeStreams::iterator) {
+                    System.out.println();
+                    options.cache.solve(solver, s, numLives);
+                }
+                return;
+            }
             // maze container
             List<Maze> mazeList = new ArrayList<>();
             // copy the maze strings from the streams to a list
-            mazeStreams.forEach(s -> mazeList.add(new Maze(s)));
-            for (Maze maze : mazeList) {
-                // maze.printStructure();
-                System.out.println();
-                // maze.printMaze();
-                // solve
-                solver.solve(maze,3);
+            mazeStreams.forEach(s -> mazeList.add(options.parse(s)));
+            PathWriter out = new PathWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII));
+            try {
+                for (Maze maze : mazeList) {
+                    // maze.printStructure();
+                    out.newLine();
+                    // maze.printMaze();
+                    // solve
+                    printResult(solver, maze, numLives, out);
+                }
+            } finally {
+                out.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * solves the maze file in parallel, printing one result per line in input order
+     *
+     * @param mazeFile
+     * @param options
+     */
+    private static void solveBatch(String mazeFile, Options options) {
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(mazeFile), StandardCharsets.US_ASCII);
+             BatchSolver batch = options.batch())
+        {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+            batch.solveAll(in, out);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * solves a memory mapped maze file, in parallel when threads is positive
+     *
+     * @param mazeFile
+     * @param binary whether the file is in the binary format
+     * @param options
+     */
+    private static void solveMapped(String mazeFile, boolean binary, Options options) {
+        try (BinaryMazeFile binaryFile = binary ? new BinaryMazeFile(Paths.get(mazeFile)) : null;
+             MappedMazeFile textFile = binary ? null : new MappedMazeFile(Paths.get(mazeFile)))
+        {
+            int count = binary ? binaryFile.size() : textFile.size();
+            IntFunction<Maze> load = binary ? binaryFile::get : textFile::get;
+            SolverMetrics metrics = options.metrics;
+            IntFunction<Maze> mazes = metrics == null ? load : i -> metrics.parse(() -> load.apply(i));
+            if (options.threads > 0) {
+                try (BatchSolver batch = options.batch()) {
+                    Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII),
+                            1 << 16);
+                    batch.solveAll(count, mazes, out);
+                }
+            } else {
+                MazeSolver solver = options.solver();
+                int numLives = options.numLives;
+                if (options.cache != null) {
+                    for (int i = 0; i < count; i++) {
+                        System.out.println();
+                        options.cache.solve(solver, mazes.apply(i), numLives);
+                    }
+                } else {
+                    PathWriter out = new PathWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII));
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            out.newLine();
+                            printResult(solver, mazes.apply(i), numLives, out);
+                        }
+                    } finally {
+                        out.flush();
+                    }
+                }
             }
         }
         catch (IOException e)
         {
             e.printStackTrace();
         }
+    }
 
+    /**
+     * writes the result of one maze the way MazeSolver prints it, the path followed by an empty line or "no path found"
+     *
+     * @param solver
+     * @param maze
+     * @param numLives
+     * @param out
+     * @throws IOException
+     */
+    private static void printResult(MazeSolver solver, Maze maze, int numLives, PathWriter out) throws IOException {
+        if (solver.solve(maze, numLives, out)) {
+            out.newLine();
+        }
+        out.newLine();
+    }
+
+    /**
+     * reports how the cache did and writes the metrics, for whichever of them there is
+     *
+     * @param options
+     * @param metricsFile "-" for stderr
+     */
+    private static void printStats(Options options, String metricsFile) {
+        if (options.cache != null) {
+            System.err.println("cache: " + options.cache);
+        }
+        if (options.metrics != null) {
+            try {
+                if ("-".equals(metricsFile)) {
+                    Writer err = new OutputStreamWriter(System.err, StandardCharsets.US_ASCII);
+                    options.metrics.writeJson(err);
+                } else {
+                    try (Writer out = Files.newBufferedWriter(Paths.get(metricsFile), StandardCharsets.US_ASCII)) {
+                        options.metrics.writeJson(out);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * how the mazes of a run are solved
+     */
+    private static final class Options {
+        int numLives = 3;
+        int threads;
+        SolveMethod method = SolveMethod.BREADTH_FIRST;
+        PathFormat format = PathFormat.LIST;
+        SolutionCache cache;        // null for no cache
+        SolverMetrics metrics;      // null when nothing is measured
+
+        MazeSolver solver() {
+            MazeSolver solver = new MazeSolver(method);
+            solver.setPathFormat(format);
+            solver.setMetrics(metrics);
+            return solver;
+        }
+
+        BatchSolver batch() {
+            BatchSolver batch = new BatchSolver(threads, numLives, method);
+            batch.setCache(cache);
+            batch.setPathFormat(format);
+            batch.setMetrics(metrics);
+            return batch;
+        }
+
+        Maze parse(String compactMaze) {
+            return metrics == null ? new Maze(compactMaze) : metrics.parse(() -> new Maze(compactMaze));
+        }
     }
 }
@@ -14,98 +14,578 @@ package sparkcog.demo;
  * That can happen if the heuristic used is not very good, or if the graph is very sparse or small, or if the heuristic
  * fails for a given graph.
  *
+ * the grid is unit weight though, so A* can use a bucket queue keyed on the integer f cost whose operations are O(1)
+ * as well (see AStarSearch). It is available as SolveMethod.A_STAR next to the other methods, getNodesExpanded tells
+ * how many cells each one had to look at on a given maze.
+ *
+ * a solver keeps its search memory (see SolverScratch) between calls so solving many mazes in a row does not churn the
+ * garbage collector. Because of that a solver must stay confined to one thread.
+ *
+ * paths are kept as direction ordinals in the scratch and only turned into text at the end, either into the returned
+ * String or straight into a PathWriter, optionally run length encoded (see PathFormat).
+ *
  * Source: Introduction to Algorithms by Charles E. Leiserson, Clifford Stein, Ronald Rivest, and Thomas H. Cormen
  */
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
 
 public class MazeSolver {
 
+    // result of a maze that can not be solved
+    static final String NO_PATH = "no path found";
+
+    // order in which walkBack looks at the openings of a cell
+    private static final int[] WALK_ORDER = {Cell.DIR_UP, Cell.DIR_LEFT, Cell.DIR_DOWN, Cell.DIR_RIGHT};
+
+    // search memory reused across solves, this is why a solver must not be shared between threads
+    private final SolverScratch scratch = new SolverScratch();
+
+    // method used by solve(maze, numLives)
+    private final SolveMethod method;
+
+    // whether solve prints its result as well as returning it
+    private boolean printPath = true;
+
+    // how solve writes the paths it returns and prints
+    private PathFormat pathFormat = PathFormat.LIST;
+
+    // where solve records its timings and counts, null when nothing is measured
+    private SolverMetrics metrics;
+
+    // pool and buffers of the PARALLEL method, created on first use
+    private ParallelSearch parallel;
+
+    public MazeSolver() {
+        this(SolveMethod.BREADTH_FIRST);
+    }
+
+    public MazeSolver(SolveMethod method) {
+        this.method = method;
+    }
+
     /**
-     * generic solve in case there is a need to expand to different solving methods
+     * turns printing of the results to System.out on or off, callers that collect the returned strings themselves
+     * (eg. BatchSolver) turn it off
+     *
+     * @param printPath
+     */
+    public void setPrintPath(boolean printPath) {
+        this.printPath = printPath;
+    }
+
+    /**
+     * picks the format of the paths solve returns and prints, LIST unless set
+     *
+     * @param pathFormat
+     */
+    public void setPathFormat(PathFormat pathFormat) {
+        this.pathFormat = pathFormat;
+    }
+
+    /**
+     * records the phase timings, nodes expanded, queue peak, path length and mines of every solve from now on (and
+     * commits a JFR event per phase), null turns measuring off. The metrics may be shared with other solvers.
+     *
+     * @param metrics
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * picks the pool the PARALLEL method runs on and the number of cells from which a maze is worth it, smaller
+     * mazes get the bit parallel BFS, which leaves the same distances. Unless set the common pool is used for mazes of
+     * a million cells and up.
+     *
+     * @param pool
+     * @param threshold
+     */
+    public void setParallelism(ForkJoinPool pool, int threshold) {
+        parallel = new ParallelSearch(pool, threshold);
+    }
+
+    /**
+     * generic solve in case there is a need to expand to different solving methods, uses the method this solver was
+     * created with
      *
      * @param maze
      * @param numLives
      * @return
      */
     public String solve(Maze maze, int numLives) {
-        return solvebyBreadthFisrtSearch(maze, numLives);
+        return solve(maze, numLives, method);
     }
 
     /**
-     * traverses the maze in breadth first order to try to find the shortest distance from the starting cell to the
-     * ending cell. Stops once it runs out of cells to process.
+     * solves the maze with the given method
+     *
+     * @param maze
+     * @param numLives
+     * @param method
+     * @return
+     */
+    public String solve(Maze maze, int numLives, SolveMethod method) {
+        if (metrics != null) {
+            long start = System.nanoTime();
+            boolean found = measuredFindPath(maze, numLives, method);
+            SolverEvents.PhaseEvent event = metrics.events
+                    ? SolverEvents.begin(SolverMetrics.Phase.OUTPUT, method) : null;
+            long searched = System.nanoTime();
+            String result = found ? stringifyPath() : noPath();
+            recordOutput(maze, found, start, searched, event);
+            return result;
+        }
+        if (!findPath(maze, numLives, method)) {
+            return noPath();
+        }
+        return stringifyPath();
+    }
+
+    /**
+     * the format of the paths solve returns and prints
+     *
+     * @return
+     */
+    public PathFormat getPathFormat() {
+        return pathFormat;
+    }
+
+    /**
+     * solves the maze with the method of this solver and writes the result (the path or "no path found") to out
+     * without building a String, nothing is printed and no line break is added
      *
      * @param maze
      * @param numLives
+     * @param out
+     * @return false if there is no path
+     * @throws IOException
+     */
+    public boolean solve(Maze maze, int numLives, PathWriter out) throws IOException {
+        SolverMetrics m = metrics;
+        long start = m != null ? System.nanoTime() : 0;
+        boolean found = m != null ? measuredFindPath(maze, numLives, method) : findPath(maze, numLives, method);
+        SolverEvents.PhaseEvent event = m != null && m.events ? SolverEvents.begin(SolverMetrics.Phase.OUTPUT, method)
+                : null;
+        long searched = m != null ? System.nanoTime() : 0;
+        if (found) {
+            out.writePath(scratch, pathFormat);
+        } else {
+            out.write(NO_PATH);
+        }
+        if (m != null) {
+            recordOutput(maze, found, start, searched, event);
+        }
+        return found;
+    }
+
+    /**
+     * solves the maze for every number of lives from 1 up to maxLives at once, with the exact search of LIVES_AWARE
+     * whatever the method of this solver. Instead of a search per number of lives a single search goes on past the
+     * shortest path until it finds one that steps on no mine (see LivesAwareSearch.sweep), every path it finds on the
+     * way is the answer for a range of lives. Nothing is printed.
+     *
+     * @param maze
+     * @param maxLives
      * @return
      */
-    private String solvebyBreadthFisrtSearch(Maze maze, int numLives) {
-        // need to get a way to keep track of shortest path
-        // create a visited structure to keep track of visited cells
-        Boolean[][] visited = new Boolean[maze.height][maze.width];
-        for (int h = 0; h < maze.height; h++) {
-            Arrays.fill(visited[h], Boolean.FALSE);
+    public LivesSweep sweepLives(Maze maze, int maxLives) {
+        String[] paths = new String[Math.max(maxLives, 0)];
+        Arrays.fill(paths, NO_PATH);
+        Connectivity c = connectivity(maze);
+        if (c != null && c.rulesOut(maxLives, true)) {
+            scratch.prepare(0);
+            return new LivesSweep(paths, 0);
+        }
+        int layers = c != null ? c.livesNeeded(maxLives) : maxLives;
+        int[] arrivals = new int[Math.max(layers, 0)];
+        int count = LivesAwareSearch.sweep(maze, layers, scratch, arrivals);
+        for (int a = 0; a < count; a++) {
+            LivesAwareSearch.pathTo(maze, scratch, arrivals[a]);
+            String path = pathText();
+            // the path of an arrival is the shortest for every number of lives from one more than its mines up to the
+            // mines of the arrival before it, which is shorter but steps on more of them
+            int most = a == 0 ? maxLives : arrivals[a - 1];
+            for (int lives = arrivals[a] + 1; lives <= most; lives++) {
+                paths[lives - 1] = path;
+            }
         }
-        // keep track of the distance from starting cell to all other cells
-        int[][] distance = new int[maze.height][maze.width];
-        // create a queue
-        Queue<Cell> q = new LinkedList<>();
+        return new LivesSweep(paths, count > 0 ? arrivals[count - 1] + 1 : 0);
+    }
+
+    /**
+     * the results of sweepLives, the path for each number of lives and how many lives it takes to get through at all
+     */
+    public static final class LivesSweep {
+
+        private final String[] paths;       // paths[numLives - 1], NO_PATH where there is none
+        private final int minLives;
+
+        LivesSweep(String[] paths, int minLives) {
+            this.paths = paths;
+            this.minLives = minLives;
+        }
+
+        /**
+         * the shortest path with the given lives, or "no path found", in the format of the solver
+         *
+         * @param numLives from 1 up to getMaxLives
+         * @return
+         */
+        public String getPath(int numLives) {
+            return paths[numLives - 1];
+        }
+
+        /**
+         * the fewest lives with which there is a path
+         *
+         * @return 0 when even getMaxLives lives are not enough
+         */
+        public int getMinLives() {
+            return minLives;
+        }
+
+        public int getMaxLives() {
+            return paths.length;
+        }
+    }
+
+    /**
+     * the directions of the path found by the last successful solve, from the start to the end, as direction ordinals
+     * (see Cell.DIR_UP)
+     *
+     * @return
+     */
+    public byte[] getPath() {
+        byte[] path = new byte[scratch.stepCount];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = scratch.steps[scratch.stepCount - 1 - i];
+        }
+        return path;
+    }
+
+    /**
+     * the method used by solve(maze, numLives)
+     *
+     * @return
+     */
+    public SolveMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * number of cells (or states, for the lives aware search) the last solve took off its queues
+     *
+     * @return
+     */
+    public long getNodesExpanded() {
+        return scratch.expanded;
+    }
+
+    /**
+     * runs the search and path reconstruction of a method, the path is left in the scratch steps
+     *
+     * @param maze
+     * @param numLives
+     * @param method
+     * @return false if there is no path
+     */
+    boolean findPath(Maze maze, int numLives, SolveMethod method) {
+        Connectivity c = connectivity(maze);
+        if (c != null && c.rulesOut(numLives, !walksBack(method))) {
+            scratch.prepare(0);
+            return false;
+        }
+        return findPath(maze, numLives, method, c);
+    }
+
+    /**
+     * findPath once the connectivity of the maze had its say
+     *
+     * @param maze
+     * @param numLives
+     * @param method
+     * @param c the connectivity of the maze, null when it is not known
+     * @return false if there is no path
+     */
+    private boolean findPath(Maze maze, int numLives, SolveMethod method, Connectivity c) {
+        switch (method) {
+            case LIVES_AWARE:
+                return LivesAwareSearch.search(maze, c != null ? c.livesNeeded(numLives) : numLives, scratch);
+            case BIDIRECTIONAL:
+                return survivable(maze, numLives, BidirectionalSearch.search(maze, scratch));
+            case A_STAR:
+                return survivable(maze, numLives, AStarSearch.search(maze, scratch));
+            case PACKED_BFS:
+                return survivable(maze, numLives, PackedSearch.search(maze, scratch));
+            case JUNCTION:
+                return JunctionSearch.search(maze, c != null ? c.livesNeeded(numLives) : numLives, scratch);
+            case BIT_PARALLEL:
+            case PARALLEL:
+            default:
+                searchDistances(maze, method);
+                return walkBack(maze, numLives);
+        }
+    }
+
+    /**
+     * the connectivity of a maze that has a start and an end (see Maze.connectivity)
+     *
+     * @param maze
+     * @return null when it is not known
+     */
+    private static Connectivity connectivity(Maze maze) {
+        return maze.startIndex >= 0 && maze.endIndex >= 0 ? maze.connectivity() : null;
+    }
+
+    /**
+     * the BFS that walkBack works from, with the queue for BREADTH_FIRST, 64 cells at a time for BIT_PARALLEL (see
+     * BitParallelSearch) or on all cores for PARALLEL (see ParallelSearch, below its threshold the bit parallel one)
+     *
+     * @param maze
+     * @param method
+     */
+    void searchDistances(Maze maze, SolveMethod method) {
+        if (method == SolveMethod.PARALLEL && parallel().worthIt(maze)) {
+            parallel.search(maze, scratch);
+        } else if (method == SolveMethod.BIT_PARALLEL || method == SolveMethod.PARALLEL) {
+            // a small maze gets the same distances without the pool, so its path does not depend on the threshold
+            BitParallelSearch.search(maze, scratch);
+        } else {
+            breadthFirstSearch(maze);
+        }
+    }
+
+    /**
+     * whether a method finds its path with walkBack over BFS distances (see searchDistances)
+     *
+     * @param method
+     * @return
+     */
+    static boolean walksBack(SolveMethod method) {
+        return method == SolveMethod.BREADTH_FIRST || method == SolveMethod.BIT_PARALLEL
+                || method == SolveMethod.PARALLEL;
+    }
+
+    private ParallelSearch parallel() {
+        if (parallel == null) {
+            parallel = new ParallelSearch(ForkJoinPool.commonPool(), ParallelSearch.DEFAULT_THRESHOLD);
+        }
+        return parallel;
+    }
+
+    /**
+     * findPath with every phase timed, for the methods that walk back the BFS and the walk back are timed apart
+     *
+     * @param maze
+     * @param numLives
+     * @param method
+     * @return false if there is no path
+     */
+    private boolean measuredFindPath(Maze maze, int numLives, SolveMethod method) {
+        SolverMetrics m = metrics;
+        SolverEvents.PhaseEvent event = m.events ? SolverEvents.begin(SolverMetrics.Phase.SEARCH, method) : null;
+        long start = System.nanoTime();
+        boolean found;
+        Connectivity c = connectivity(maze);
+        if (c != null && c.rulesOut(numLives, !walksBack(method))) {
+            scratch.prepare(0);
+            found = false;
+            m.record(SolverMetrics.Phase.SEARCH, System.nanoTime() - start);
+        } else if (walksBack(method)) {
+            searchDistances(maze, method);
+            long searched = System.nanoTime();
+            m.record(SolverMetrics.Phase.SEARCH, searched - start);
+            if (event != null) {
+                SolverEvents.commit(event, maze, scratch.expanded);
+                event = SolverEvents.begin(SolverMetrics.Phase.WALK_BACK, method);
+            }
+            found = walkBack(maze, numLives);
+            m.record(SolverMetrics.Phase.WALK_BACK, System.nanoTime() - searched);
+        } else {
+            found = findPath(maze, numLives, method, c);
+            m.record(SolverMetrics.Phase.SEARCH, System.nanoTime() - start);
+        }
+        if (event != null) {
+            SolverEvents.commit(event, maze, scratch.expanded);
+        }
+        return found;
+    }
+
+    /**
+     * records the output phase, the whole solve and its outcome
+     *
+     * @param maze
+     * @param found
+     * @param start when the solve started
+     * @param searched when the output started
+     * @param event the JFR event of the output phase, null when there is none
+     */
+    private void recordOutput(Maze maze, boolean found, long start, long searched, SolverEvents.PhaseEvent event) {
+        SolverMetrics m = metrics;
+        long end = System.nanoTime();
+        if (event != null) {
+            SolverEvents.commit(event, maze, scratch.expanded);
+        }
+        m.record(SolverMetrics.Phase.OUTPUT, end - searched);
+        m.record(SolverMetrics.Phase.SOLVE, end - start);
+        m.recordSolve(found, scratch.expanded, scratch.queuePeak(), found ? scratch.stepCount : 0,
+                found ? minesOnPath(maze) : 0);
+    }
+
+    /**
+     * records a solve made for a SolutionCache as a whole, the cache runs the search (or a walk back over a cached
+     * distance field) itself so the phases are not timed apart
+     *
+     * @param found
+     * @param nanos
+     * @param mines mines stepped on along the path
+     */
+    void recordCacheMiss(boolean found, long nanos, int mines) {
+        SolverMetrics m = metrics;
+        m.record(SolverMetrics.Phase.SOLVE, nanos);
+        m.recordSolve(found, scratch.expanded, scratch.queuePeak(), found ? scratch.stepCount : 0, mines);
+    }
+
+    /**
+     * the number of steps of the path found by the last successful search
+     *
+     * @return
+     */
+    int pathLength() {
+        return scratch.stepCount;
+    }
+
+    /**
+     * finishes a search that ignored mines. The shortest path ignoring mines is also the shortest survivable one if it
+     * has few enough mines on it, otherwise the lives aware search takes over.
+     *
+     * @param maze
+     * @param numLives
+     * @param found whether the search reached the end, the path is in the scratch
+     * @return false if there is no survivable path
+     */
+    private boolean survivable(Maze maze, int numLives, boolean found) {
+        if (!found || numLives < 1) {
+            return false;
+        }
+        if (minesOnPath(maze) < numLives) {
+            return true;
+        }
+        long expanded = scratch.expanded;
+        boolean survivable = LivesAwareSearch.search(maze, numLives, scratch);
+        scratch.expanded += expanded;
+        return survivable;
+    }
+
+    /**
+     * counts the mines stepped on by the path recorded in the scratch, every cell but the start. The steps are
+     * followed back from the end the way they were recorded, so a walkBack that gave up early on a legacy maze is still
+     * only counted over the cells it really went through.
+     *
+     * @param maze
+     * @return
+     */
+    int minesOnPath(Maze maze) {
+        int mines = 0;
+        int idx = maze.endIndex;
+        for (int i = 0; i < scratch.stepCount; i++) {
+            if (maze.has(idx, Cell.MINE)) {
+                mines++;
+            }
+            idx = maze.neighbor(idx, Cell.opposite(scratch.steps[i]));
+        }
+        return mines;
+    }
+
+    /**
+     * traverses the maze in breadth first order to try to find the shortest distance from the starting cell to the
+     * ending cell. Stops once it runs out of cells to process.
+     *
+     * works directly on the packed cell codes of the maze, cells are identified by their row-major index. The queue,
+     * distances and visited stamps come from the solver scratch so nothing is allocated here, walkBack picks the
+     * distances up from there.
+     *
+     * @param maze
+     */
+    void breadthFirstSearch(Maze maze) {
+        SolverScratch s = scratch;
+        s.prepare(maze.size());
+        IntQueue q = s.queue;
+        int[] distance = s.distance;
+        int[] seen = s.seen;
+        int generation = s.generation;
         // add the starging cell to the queue
-        q.add(maze.startCell);
+        q.add(maze.startIndex);
         // mark cell as visited
-        visited[maze.startCell.h][maze.startCell.w] = true;
+        seen[maze.startIndex] = generation;
+        distance[maze.startIndex] = 0;
         // start looking for the shortest path
         while(!q.isEmpty()) {
             // get the top element in the queue
-            Cell vistingCell = q.remove();
-            int currentDist = distance[vistingCell.h][vistingCell.w];
-            if (vistingCell.features.containsKey("END")) {
+            int vistingCell = q.remove();
+            s.expanded++;
+            int code = maze.code(vistingCell);
+            int currentDist = distance[vistingCell];
+            if ((code & Cell.END) != 0) {
                 break;
             }
 
             // look at connected neighbors
-            if (vistingCell.features.containsKey("UP")) {
-                visit(maze, q, visited, distance, vistingCell.h - 1, vistingCell.w, currentDist);
+            if ((code & Cell.UP) != 0) {
+                visit(s, vistingCell - maze.width, currentDist);
             }
 
-            if (vistingCell.features.containsKey("LEFT")) {
-                visit(maze, q, visited, distance, vistingCell.h, vistingCell.w - 1, currentDist);
+            if ((code & Cell.LEFT) != 0) {
+                visit(s, vistingCell - 1, currentDist);
             }
 
-            if (vistingCell.features.containsKey("DOWN")) {
-                visit(maze, q, visited, distance, vistingCell.h + 1, vistingCell.w, currentDist);
+            if ((code & Cell.DOWN) != 0) {
+                visit(s, vistingCell + maze.width, currentDist);
             }
 
-            if (vistingCell.features.containsKey("RIGHT")) {
-                visit(maze, q, visited, distance, vistingCell.h, vistingCell.w + 1, currentDist);
+            if ((code & Cell.RIGHT) != 0) {
+                visit(s, vistingCell + 1, currentDist);
             }
         }
+    }
 
-        return walkBack(maze, distance, numLives);
+    /**
+     * a copy of the distances left by the last breadthFirstSearch, so they can be replayed later (see SolutionCache)
+     *
+     * @param size
+     * @return
+     */
+    int[] distanceField(int size) {
+        return scratch.distanceField(size);
+    }
+
+    /**
+     * puts saved BFS distances in place of a breadthFirstSearch, walkBack can run on them right away
+     *
+     * @param field
+     */
+    void loadDistanceField(int[] field) {
+        scratch.loadDistanceField(field);
     }
 
     /**
      * a helper function to process visited cells
      *
-     * @param maze
-     * @param q
-     * @param visited
-     * @param distance
-     * @param h
-     * @param w
+     * @param s
+     * @param next
      * @param currentDist
      */
-    private void visit(Maze maze, Queue<Cell> q, Boolean[][] visited, int[][] distance, int h, int w, int currentDist) {
-        if (!visited[h][w]) {
-            Cell next = maze.structure[h][w];
-            q.add(next);
-            visited[h][w] = true;
-            distance[h][w] = currentDist + 1;
+    private void visit(SolverScratch s, int next, int currentDist) {
+        if (s.seen[next] != s.generation) {
+            s.queue.add(next);
+            s.seen[next] = s.generation;
+            s.distance[next] = currentDist + 1;
         }
     }
 
@@ -114,184 +594,81 @@ public class MazeSolver {
      * once it reaches 1 life, it looks for alternate, unvisited paths, if none exist, it fails. If it reaches the
      * starting cell it prints and returns the directions to get from the starting to the ending cell.
      *
+     * the directions are checked in the order UP, LEFT, DOWN, RIGHT, each check looks at the cell reached by the
+     * previous one. Reads the distances left in the scratch by the BFS and leaves the path in the scratch steps.
+     *
      * @param maze
-     * @param distance
      * @param numLives
-     * @return
+     * @return false if no path was found
      */
-    private String walkBack(Maze maze, int[][] distance, int numLives) {
-        List<String> shortestPath = new ArrayList<>();
+    boolean walkBack(Maze maze, int numLives) {
+        SolverScratch s = scratch;
         // in case of not enough lives
-        Boolean[][] visited = new Boolean[maze.height][maze.width];
-        for (int h = 0; h < maze.height; h++) {
-            Arrays.fill(visited[h], Boolean.FALSE);
+        int[] visited = s.marks;
+        int generation = s.generation;
+        if (maze.endIndex < 0) {
+            // nowhere to get to
+            return false;
         }
         // get the distance from the end
-        int currDist = distance[maze.endCell.h][maze.endCell.w];
-        Cell currentCell = maze.endCell;
-        visited[maze.endCell.h][maze.endCell.w] = true;
+        int currDist = s.distanceOf(maze.endIndex);
+        if (currDist == 0 && maze.endIndex != maze.startIndex) {
+            // the BFS never got to the end
+            return false;
+        }
+        int currentCell = maze.endIndex;
+        visited[maze.endIndex] = generation;
         boolean mineFlag = false;
         int altPathCount = 0;
         while(currDist != 0) {
+            int stepsBefore = s.stepCount;
+            boolean mineFlagBefore = mineFlag;
+            int altPathCountBefore = altPathCount;
 
             if (numLives > 1) {
                 // check each direction for an opening and the smaller distance
-                if (currentCell.features.containsKey("UP")) {
-                    if (distance[currentCell.h - 1][currentCell.w] < currDist) {
-                        shortestPath.add("DOWN");
-                        currDist = distance[currentCell.h - 1][currentCell.w];
-                        currentCell = maze.structure[currentCell.h - 1][currentCell.w];
-                        visited[currentCell.h][currentCell.w] = true;
-                        if (currentCell.features.containsKey("MINE")) {
-                            numLives = numLives - 1;
-                        }
-                    }
-                }
-
-                if (currentCell.features.containsKey("LEFT")) {
-                    if (distance[currentCell.h][currentCell.w - 1] < currDist) {
-                        shortestPath.add("RIGHT");
-                        currDist = distance[currentCell.h][currentCell.w - 1];
-                        currentCell = maze.structure[currentCell.h][currentCell.w - 1];
-                        visited[currentCell.h][currentCell.w] = true;
-                        if (currentCell.features.containsKey("MINE")) {
-                            numLives = numLives - 1;
-                        }
-                    }
-                }
-
-                if (currentCell.features.containsKey("DOWN")) {
-                    if (distance[currentCell.h + 1][currentCell.w] < currDist) {
-                        shortestPath.add("UP");
-                        currDist = distance[currentCell.h + 1][currentCell.w];
-                        currentCell = maze.structure[currentCell.h + 1][currentCell.w];
-                        visited[currentCell.h][currentCell.w] = true;
-                        if (currentCell.features.containsKey("MINE")) {
-                            numLives = numLives - 1;
-                        }
-                    }
-                }
-
-                if (currentCell.features.containsKey("RIGHT")) {
-                    if (distance[currentCell.h][currentCell.w + 1] < currDist) {
-                        shortestPath.add("LEFT");
-                        currDist = distance[currentCell.h][currentCell.w + 1];
-                        currentCell = maze.structure[currentCell.h][currentCell.w + 1];
-                        visited[currentCell.h][currentCell.w] = true;
-                        if (currentCell.features.containsKey("MINE")) {
-                            numLives = numLives - 1;
+                for (int dir : WALK_ORDER) {
+                    if (maze.has(currentCell, 1 << dir)) {
+                        int next = maze.neighbor(currentCell, dir);
+                        if (s.distanceOf(next) < currDist) {
+                            s.addStep(Cell.opposite(dir));
+                            currDist = s.distanceOf(next);
+                            currentCell = next;
+                            visited[currentCell] = generation;
+                            if (maze.has(currentCell, Cell.MINE)) {
+                                numLives = numLives - 1;
+                            }
                         }
                     }
                 }
             } else {
                 // we are down to one life, have to look for alternate paths
-                if (currentCell.features.containsKey("UP")) {
-                    if (mineFlag) {
-                        if (!visited[currentCell.h - 1][currentCell.w] && !maze.structure[currentCell.h - 1][currentCell.w].features.containsKey("MINE")) {
-                            shortestPath.add("DOWN");
-                            currDist = distance[currentCell.h - 1][currentCell.w];
-                            currentCell = maze.structure[currentCell.h - 1][currentCell.w];
-                            visited[currentCell.h][currentCell.w] = true;
-                            mineFlag = false;
-                            altPathCount = 0;
-                        } else {
-                            altPathCount++;
-                        }
-                    } else {
-                        if (!visited[currentCell.h - 1][currentCell.w]) {
-                            if (!maze.structure[currentCell.h - 1][currentCell.w].features.containsKey("MINE")) {
-                                if (distance[currentCell.h - 1][currentCell.w] < currDist) {
-                                    shortestPath.add("DOWN");
-                                    currDist = distance[currentCell.h - 1][currentCell.w];
-                                    currentCell = maze.structure[currentCell.h - 1][currentCell.w];
-                                    visited[currentCell.h][currentCell.w] = true;
-                                }
-                            } else {
-                                mineFlag = true;
-                            }
-                        }
-                    }
-                }
-
-                if (currentCell.features.containsKey("LEFT")) {
-                    if (mineFlag) {
-                        if (!visited[currentCell.h][currentCell.w - 1] && !maze.structure[currentCell.h][currentCell.w - 1].features.containsKey("MINE")) {
-                            shortestPath.add("RIGHT");
-                            currDist = distance[currentCell.h][currentCell.w - 1];
-                            currentCell = maze.structure[currentCell.h][currentCell.w - 1];
-                            visited[currentCell.h][currentCell.w] = true;
-                            mineFlag = false;
-                            altPathCount = 0;
-                        } else {
-                            altPathCount++;
-                        }
-                    } else {
-                        if (!visited[currentCell.h][currentCell.w - 1]) {
-                            if (!maze.structure[currentCell.h][currentCell.w - 1].features.containsKey("MINE")) {
-                                if (distance[currentCell.h][currentCell.w - 1] < currDist) {
-                                    shortestPath.add("RIGHT");
-                                    currDist = distance[currentCell.h][currentCell.w - 1];
-                                    currentCell = maze.structure[currentCell.h][currentCell.w - 1];
-                                    visited[currentCell.h][currentCell.w] = true;
-                                }
-                            } else {
-                                mineFlag = true;
-                            }
-                        }
-                    }
-                }
-
-                if (currentCell.features.containsKey("DOWN")) {
-                    if (mineFlag) {
-                        if (!visited[currentCell.h + 1][currentCell.w] && !maze.structure[currentCell.h + 1][currentCell.w].features.containsKey("MINE")) {
-                            shortestPath.add("UP");
-                            currDist = distance[currentCell.h + 1][currentCell.w];
-                            currentCell = maze.structure[currentCell.h + 1][currentCell.w];
-                            visited[currentCell.h][currentCell.w] = true;
-                            mineFlag = false;
-                            altPathCount = 0;
-                        } else {
-                            altPathCount++;
-                        }
-                    } else {
-                        if (!visited[currentCell.h + 1][currentCell.w]) {
-                            if (!maze.structure[currentCell.h + 1][currentCell.w].features.containsKey("MINE")) {
-                                if (distance[currentCell.h + 1][currentCell.w] < currDist) {
-                                    shortestPath.add("UP");
-                                    currDist = distance[currentCell.h + 1][currentCell.w];
-                                    currentCell = maze.structure[currentCell.h + 1][currentCell.w];
-                                    visited[currentCell.h][currentCell.w] = true;
-                                }
+                for (int dir : WALK_ORDER) {
+                    if (maze.has(currentCell, 1 << dir)) {
+                        int next = maze.neighbor(currentCell, dir);
+                        if (mineFlag) {
+                            if (visited[next] != generation && !maze.has(next, Cell.MINE)) {
+                                s.addStep(Cell.opposite(dir));
+                                currDist = s.distanceOf(next);
+                                currentCell = next;
+                                visited[currentCell] = generation;
+                                mineFlag = false;
+                                altPathCount = 0;
                             } else {
-                                mineFlag = true;
+                                altPathCount++;
                             }
-                        }
-                    }
-                }
-
-                if (currentCell.features.containsKey("RIGHT")) {
-                    if (mineFlag) {
-                        if (!visited[currentCell.h][currentCell.w + 1] && !maze.structure[currentCell.h][currentCell.w + 1].features.containsKey("MINE")) {
-                            shortestPath.add("LEFT");
-                            currDist = distance[currentCell.h][currentCell.w + 1];
-                            currentCell = maze.structure[currentCell.h][currentCell.w + 1];
-                            visited[currentCell.h][currentCell.w] = true;
-                            mineFlag = false;
-                            altPathCount = 0;
                         } else {
-                            altPathCount++;
-                        }
-                    } else {
-                        if (!visited[currentCell.h][currentCell.w + 1]) {
-                            if (!maze.structure[currentCell.h][currentCell.w + 1].features.containsKey("MINE")) {
-                                if (distance[currentCell.h][currentCell.w + 1] < currDist) {
-                                    shortestPath.add("LEFT");
-                                    currDist = distance[currentCell.h][currentCell.w + 1];
-                                    currentCell = maze.structure[currentCell.h][currentCell.w + 1];
-                                    visited[currentCell.h][currentCell.w] = true;
+                            if (visited[next] != generation) {
+                                if (!maze.has(next, Cell.MINE)) {
+                                    if (s.distanceOf(next) < currDist) {
+                                        s.addStep(Cell.opposite(dir));
+                                        currDist = s.distanceOf(next);
+                                        currentCell = next;
+                                        visited[currentCell] = generation;
+                                    }
+                                } else {
+                                    mineFlag = true;
                                 }
-                            } else {
-                                mineFlag = true;
                             }
                         }
                     }
@@ -299,36 +676,72 @@ public class MazeSolver {
 
                 // one of the neigbors started the counter and no alternative path was found.
                 if (altPathCount > 3) {
-                    System.out.println("no path found");
-                    return "no path found";
+                    return false;
                 }
 
             }
+
+            // nothing moved and nothing changed, the next round would do exactly the same forever
+            if (s.stepCount == stepsBefore && mineFlag == mineFlagBefore && altPathCount == altPathCountBefore) {
+                return false;
+            }
         }
 
-        return stringifyPath(shortestPath);
+        return true;
+    }
+
+    /**
+     * helper function to report a maze that can not be solved
+     *
+     * @return
+     */
+    private String noPath() {
+        return report(NO_PATH);
     }
 
     /**
      * helper function to print the instruction in the required format
      *
-     * @param shortestPath
      * @return
      */
-    private String stringifyPath(List<String> shortestPath) {
-        String path = "[";
-        if (!shortestPath.isEmpty()) {
-            for (int i = shortestPath.size() - 1; i > 0; i--) {
-                path += "'" + shortestPath.get(i) + "', ";
+    private String stringifyPath() {
+        return report(pathText());
+    }
+
+    /**
+     * prints a result the way solve does, also used for results that did not come out of a search (eg. from a
+     * SolutionCache)
+     *
+     * @param result a path or NO_PATH
+     * @return the result
+     */
+    String report(String result) {
+        if (printPath) {
+            System.out.println(result);
+            if (!NO_PATH.equals(result)) {
+                System.out.println();
             }
-            path += "'" + shortestPath.get(0) + "']";
-        } else {
-            path += "]";
         }
+        return result;
+    }
 
-        System.out.println(path);
-        System.out.println();
+    /**
+     * the path found by the last successful search in the required format. The steps were recorded walking back from
+     * the end, so they are read last to first.
+     *
+     * @return
+     */
+    String pathText() {
+        return scratch.text.pathText(scratch, pathFormat);
+    }
 
-        return path;
+    /**
+     * the path recorded in a scratch in the required format, also used by MazeRouter
+     *
+     * @param s
+     * @return
+     */
+    static String pathText(SolverScratch s) {
+        return s.text.pathText(s, PathFormat.LIST);
     }
 }
@@ -0,0 +1,64 @@
+package sparkcog.demo;
+
+/**
+ * helpers for bit sets and 2-bit direction arrays packed into longs. Indices are longs so a packed array can address
+ * more entries than an int allows (eg. cells times lives), the backing array itself is still limited to an int length.
+ */
+
+final class PackedBits {
+
+    private PackedBits() {
+    }
+
+    /**
+     * number of longs needed to hold the given number of bits
+     *
+     * @param bits
+     * @return
+     */
+    static int wordsForBits(long bits) {
+        return (int) ((bits + 63) >>> 6);
+    }
+
+    /**
+     * number of longs needed to hold the given number of 2-bit entries, 32 per long
+     *
+     * @param entries
+     * @return
+     */
+    static int wordsForPairs(long entries) {
+        return (int) ((entries + 31) >>> 5);
+    }
+
+    static boolean get(long[] bits, long i) {
+        return (bits[(int) (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    static void set(long[] bits, long i) {
+        bits[(int) (i >>> 6)] |= 1L << i;
+    }
+
+    /**
+     * reads a 2-bit entry
+     *
+     * @param words
+     * @param i
+     * @return a value between 0 and 3
+     */
+    static int getPair(long[] words, long i) {
+        return (int) (words[(int) (i >>> 5)] >>> ((i & 31) << 1)) & 3;
+    }
+
+    /**
+     * overwrites a 2-bit entry
+     *
+     * @param words
+     * @param i
+     * @param value a value between 0 and 3
+     */
+    static void setPair(long[] words, long i, int value) {
+        int word = (int) (i >>> 5);
+        int shift = (int) (i & 31) << 1;
+        words[word] = (words[word] & ~(3L << shift)) | ((long) value << shift);
+    }
+}
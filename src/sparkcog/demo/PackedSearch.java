@@ -0,0 +1,83 @@
+package sparkcog.demo;
+
+/**
+ * BFS that keeps 3 bits per cell instead of the 12 bytes of the original solver (an int distance and two int visited
+ * stamps, see SolverScratch), for mazes whose bookkeeping would not fit in memory otherwise. A cell has 1 visited bit
+ * and the 2-bit direction it was entered from, packed 64 and 32 to a long (see PackedBits). There are no distances to
+ * compare: once the end is reached the path is a straight walk back along the parent directions.
+ *
+ * the bits are those of the layered lives search (see LivesAwareSearch), a plain BFS is its layer 0. Mines are
+ * ignored, see MazeSolver for how lives are applied to the result. On a 20000 x 20000 maze the bits take 150 MB next
+ * to the 400 MB of the maze itself, the queue only holds the frontier.
+ */
+
+final class PackedSearch {
+
+    private PackedSearch() {
+    }
+
+    /**
+     * searches for a shortest path ignoring mines, on success the path is left in the scratch steps (recorded from
+     * the end back to the start)
+     *
+     * @param maze
+     * @param s
+     * @return false if the end can not be reached
+     */
+    static boolean search(Maze maze, SolverScratch s) {
+        int start = maze.startIndex;
+        int end = maze.endIndex;
+        // only the queue and the counters, the int arrays of the scratch stay as small as they are
+        s.prepare(0);
+        if (start < 0 || end < 0) {
+            return false;
+        }
+        if (start == end) {
+            return true;
+        }
+        s.prepareLayers(maze.size());
+        long[] seen = s.layerSeen;
+        long[] parents = s.layerParents;
+        IntQueue q = s.queue;
+
+        PackedBits.set(seen, start);
+        q.add(start);
+        while (!q.isEmpty()) {
+            int idx = q.remove();
+            s.expanded++;
+            int code = maze.code(idx);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) == 0) {
+                    continue;
+                }
+                int next = maze.neighbor(idx, dir);
+                if (PackedBits.get(seen, next)) {
+                    continue;
+                }
+                PackedBits.set(seen, next);
+                PackedBits.setPair(parents, next, dir);
+                if (next == end) {
+                    walkParents(maze, s);
+                    return true;
+                }
+                q.add(next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * follows the parent directions from the end back to the start, recording each step
+     *
+     * @param maze
+     * @param s
+     */
+    private static void walkParents(Maze maze, SolverScratch s) {
+        int idx = maze.endIndex;
+        while (idx != maze.startIndex) {
+            int dir = PackedBits.getPair(s.layerParents, idx);
+            s.addStep(dir);
+            idx = maze.neighbor(idx, Cell.opposite(dir));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package sparkcog.demo;
+
+/**
+ * breadth first search of one large maze on all cores, level by level. The cells of a level are cut into slices of
+ * SLICE cells and the slices are expanded as tasks of a fork join pool; a cell is claimed for the next level with a
+ * compare and set on a packed visited bit set, so whichever slice gets to a cell first owns it and no lock is taken.
+ * Every slice writes the cells it claimed to a buffer of its own, and the buffers are laid end to end (counts summed
+ * up front) to form the next level once all slices are done.
+ *
+ * levels too small to be worth a round trip through the pool are expanded on the calling thread, and mazes below the
+ * threshold are left to BitParallelSearch altogether. The pool hand off per level costs some microseconds,
+ * so what parallelizes well is a wide front (open and braided mazes); a perfect maze, whose front is a cell or two
+ * in a corridor, runs almost all of its levels on the calling thread.
+ *
+ * the distances come from the level numbers and go to the same scratch arrays as the queue's, walkBack runs on them
+ * unchanged. Like BitParallelSearch the level after the end is filled in completely, which the queue leaves half done,
+ * so both leave the same distances and the path of a maze does not depend on which side of the threshold it is: the
+ * answers are those of SolveMethod.BIT_PARALLEL (see there for how they compare with BREADTH_FIRST). Mines are
+ * ignored.
+ *
+ * an instance keeps its buffers between searches and runs one search at a time, it belongs to one MazeSolver.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class ParallelSearch {
+
+    static final int DEFAULT_THRESHOLD = 1 << 20;   // cells below which the bit parallel search runs instead
+
+    private static final int SLICE = 4096;          // cells of a level expanded by one task
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    private AtomicLongArray visited = new AtomicLongArray(0);
+    private int[] level = new int[0];               // cells of the level being expanded
+    private int levelSize;
+    private int[][] buffers = new int[0][];         // cells claimed by each slice
+    private int[] counts = new int[0];              // number of cells claimed by each slice
+
+    // the search in progress, read by the tasks
+    private Maze maze;
+    private SolverScratch scratch;
+    private int distance;                           // distance of the cells claimed in the current level
+
+    ParallelSearch(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * whether a maze is large enough to be searched in parallel
+     *
+     * @param maze
+     * @return
+     */
+    boolean worthIt(Maze maze) {
+        return maze.size() >= threshold;
+    }
+
+    /**
+     * computes the BFS distances from the start up to one level past the end, they are left in the scratch where
+     * distanceOf reads them
+     *
+     * @param maze
+     * @param s
+     */
+    void search(Maze maze, SolverScratch s) {
+        int n = maze.size();
+        s.prepare(n);
+        prepare(n);
+        this.maze = maze;
+        this.scratch = s;
+        int start = maze.startIndex;
+        int end = maze.endIndex;
+        claim(start);
+        s.distance[start] = 0;
+        s.seen[start] = s.generation;
+        level[0] = start;
+        levelSize = 1;
+        s.expanded = 1;
+        boolean reached = start == end;
+        distance = 0;
+        try {
+            while (levelSize > 0) {
+                distance++;
+                expandLevel();
+                if (reached) {
+                    break;
+                }
+                reached = end >= 0 && s.seen[end] == s.generation;
+            }
+        } finally {
+            this.maze = null;
+            this.scratch = null;
+        }
+    }
+
+    /**
+     * clears the visited bits, the buffers are overwritten level by level
+     *
+     * @param n
+     */
+    private void prepare(int n) {
+        int words = PackedBits.wordsForBits(n);
+        if (visited.length() < words) {
+            visited = new AtomicLongArray(words);
+        } else {
+            for (int i = 0; i < words; i++) {
+                visited.lazySet(i, 0L);
+            }
+        }
+        if (level.length < 1024) {
+            level = new int[1024];
+        }
+    }
+
+    /**
+     * expands the current level into the next one, on the pool when it has more than one slice
+     */
+    private void expandLevel() {
+        int slices = (levelSize + SLICE - 1) / SLICE;
+        if (buffers.length < slices) {
+            buffers = Arrays.copyOf(buffers, Math.max(slices, buffers.length << 1));
+            counts = new int[buffers.length];
+        }
+        if (slices == 1) {
+            expandSlice(0);
+        } else {
+            pool.invoke(new LevelTask(0, slices));
+        }
+
+        // the slices are done (invoke waits for all of them), lay their cells end to end
+        int total = 0;
+        for (int i = 0; i < slices; i++) {
+            total += counts[i];
+        }
+        if (level.length < total) {
+            level = new int[Math.max(total, level.length << 1)];
+        }
+        int offset = 0;
+        for (int i = 0; i < slices; i++) {
+            System.arraycopy(buffers[i], 0, level, offset, counts[i]);
+            offset += counts[i];
+        }
+        levelSize = total;
+        scratch.expanded += total;
+    }
+
+    /**
+     * expands one slice of the current level, the cells it claims go to its own buffer
+     *
+     * @param slice
+     */
+    private void expandSlice(int slice) {
+        int from = slice * SLICE;
+        int to = Math.min(levelSize, from + SLICE);
+        // every cell but the start came from a neighbor, so it has at most three new ones
+        int capacity = 4 * (to - from);
+        int[] buffer = buffers[slice];
+        if (buffer == null || buffer.length < capacity) {
+            buffer = new int[Math.max(capacity, 4 * SLICE)];
+            buffers[slice] = buffer;
+        }
+        Maze m = maze;
+        int width = m.width;
+        int[] cells = level;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int idx = cells[i];
+            int code = m.code(idx);
+            if ((code & Cell.UP) != 0 && claim(idx - width)) {
+                buffer[count++] = idx - width;
+            }
+            if ((code & Cell.LEFT) != 0 && claim(idx - 1)) {
+                buffer[count++] = idx - 1;
+            }
+            if ((code & Cell.DOWN) != 0 && claim(idx + width)) {
+                buffer[count++] = idx + width;
+            }
+            if ((code & Cell.RIGHT) != 0 && claim(idx + 1)) {
+                buffer[count++] = idx + 1;
+            }
+        }
+        SolverScratch s = scratch;
+        int[] distances = s.distance;
+        int[] seen = s.seen;
+        int generation = s.generation;
+        for (int i = 0; i < count; i++) {
+            distances[buffer[i]] = distance;
+            seen[buffer[i]] = generation;
+        }
+        counts[slice] = count;
+    }
+
+    /**
+     * sets the visited bit of a cell
+     *
+     * @param idx
+     * @return false if it was already set, by this or another slice
+     */
+    private boolean claim(int idx) {
+        int word = idx >>> 6;
+        long bit = 1L << idx;
+        long bits = visited.get(word);
+        while ((bits & bit) == 0) {
+            if (visited.compareAndSet(word, bits, bits | bit)) {
+                return true;
+            }
+            bits = visited.get(word);
+        }
+        return false;
+    }
+
+    /**
+     * expands the slices between from and to, splitting them in halves until there is one per task
+     */
+    private class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        LevelTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                expandSlice(from);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LevelTask(from, mid), new LevelTask(mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package sparkcog.demo;
+
+/**
+ * the ways a found path can be written out, see PathWriter
+ */
+
+public enum PathFormat {
+
+    /**
+     * every step on its own, eg. ['RIGHT', 'RIGHT', 'DOWN'], the original format
+     */
+    LIST,
+
+    /**
+     * runs of the same direction folded into one entry with a count, eg. ['RIGHT' x2, 'DOWN']. A run of one step has
+     * no count, so paths without runs look the same as in LIST
+     */
+    RUN_LENGTH
+}
@@ -0,0 +1,203 @@
+package sparkcog.demo;
+
+/**
+ * writes solver results into a reusable character buffer. With a Writer the buffer is handed on whenever it fills up
+ * (and on flush), so results of any length go out in fixed size blocks without a String per path. Without one the
+ * buffer grows and takeString turns its contents into a String, which is how MazeSolver builds its results.
+ *
+ * paths are read straight from the direction ordinals a search recorded in its scratch, from the start to the end, and
+ * written in one of the PathFormats.
+ *
+ * not thread safe, like the solver whose results it writes.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+public final class PathWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[][] NAMES = new char[Cell.DIRECTION_NAMES.length][];
+
+    static {
+        for (int dir = 0; dir < NAMES.length; dir++) {
+            NAMES[dir] = ("'" + Cell.DIRECTION_NAMES[dir] + "'").toCharArray();
+        }
+    }
+
+    private final Writer out;       // null when the results are collected in the buffer
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int length;
+
+    /**
+     * a path writer that passes everything on to out, which is best not buffered again
+     *
+     * @param out
+     */
+    public PathWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * a path writer that only collects, see takeString
+     */
+    PathWriter() {
+        this(null);
+    }
+
+    /**
+     * writes the path recorded in a scratch, the steps are stored from the end back to the start so they are read
+     * last to first
+     *
+     * @param s
+     * @param format
+     * @throws IOException
+     */
+    void writePath(SolverScratch s, PathFormat format) throws IOException {
+        byte[] steps = s.steps;
+        append('[');
+        int i = s.stepCount - 1;
+        while (i >= 0) {
+            int dir = steps[i];
+            int run = 1;
+            if (format == PathFormat.RUN_LENGTH) {
+                while (i - run >= 0 && steps[i - run] == dir) {
+                    run++;
+                }
+            }
+            append(NAMES[dir]);
+            if (run > 1) {
+                append(' ');
+                append('x');
+                appendInt(run);
+            }
+            i -= run;
+            if (i >= 0) {
+                append(',');
+                append(' ');
+            }
+        }
+        append(']');
+    }
+
+    /**
+     * writes text as is
+     *
+     * @param text
+     * @throws IOException
+     */
+    public void write(String text) throws IOException {
+        int n = text.length();
+        ensure(n);
+        if (buffer.length - length < n) {
+            // longer than the whole buffer, only possible with a Writer
+            flushBuffer();
+            out.write(text);
+            return;
+        }
+        text.getChars(0, n, buffer, length);
+        length += n;
+    }
+
+    /**
+     * ends the current line
+     *
+     * @throws IOException
+     */
+    public void newLine() throws IOException {
+        append('\n');
+    }
+
+    /**
+     * hands everything written so far on to the writer and flushes it
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            flushBuffer();
+            out.flush();
+        }
+    }
+
+    /**
+     * the text collected since the last call, empties the buffer. Only for a path writer without a Writer.
+     *
+     * @return
+     */
+    String takeString() {
+        String text = new String(buffer, 0, length);
+        length = 0;
+        return text;
+    }
+
+    /**
+     * takeString for callers that can not throw IOException, a collecting writer never does
+     *
+     * @param s
+     * @param format
+     * @return
+     */
+    String pathText(SolverScratch s, PathFormat format) {
+        try {
+            writePath(s, format);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return takeString();
+    }
+
+    private void append(char c) throws IOException {
+        if (length == buffer.length) {
+            ensure(1);
+        }
+        buffer[length++] = c;
+    }
+
+    private void append(char[] chars) throws IOException {
+        ensure(chars.length);
+        System.arraycopy(chars, 0, buffer, length, chars.length);
+        length += chars.length;
+    }
+
+    private void appendInt(int value) throws IOException {
+        ensure(10);
+        int start = length;
+        do {
+            buffer[length++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // the digits came out lowest first
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+
+    /**
+     * makes room for n more characters, by flushing to the writer or by growing the buffer when there is none
+     *
+     * @param n
+     * @throws IOException
+     */
+    private void ensure(int n) throws IOException {
+        if (buffer.length - length >= n) {
+            return;
+        }
+        if (out != null) {
+            flushBuffer();
+        } else {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, length + n));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+}
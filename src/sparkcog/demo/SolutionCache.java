@@ -0,0 +1,322 @@
+package sparkcog.demo;
+
+/**
+ * remembers the results of mazes that were already solved, so a maze that is submitted again costs a hash of its text
+ * instead of a parse, a search and a walk back.
+ *
+ * entries are content addressed: the key is a 64-bit hash of the raw compact text (or of the cell codes, for mazes that
+ * were loaded some other way) together with its length, the number of lives, the solve method and the path format.
+ * Two different mazes would have to collide on all 64 bits and the length to be mixed up.
+ *
+ * for the methods that walk back over BFS distances (BREADTH_FIRST and the like) the distance field of a maze is cached
+ * as well, next to the parsed maze. The field does not depend on the number of lives, so a known maze with a new
+ * number of lives only repeats the walk back.
+ *
+ * a solver with metrics set (see MazeSolver.setMetrics) records every solve that goes through the cache, the ones
+ * served from it as cache hits (see SolverMetrics.recordCacheHit). A result is stored with its path length and mines
+ * stepped on for that.
+ *
+ * the cache is bounded by a number of entries and by an estimate of the bytes held, whichever is hit first, and
+ * evicts the least recently used entries. It is safe to share between threads (eg. the workers of a BatchSolver).
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+public class SolutionCache {
+
+    private static final int FIELD = -1;                // lives slot of the key of a distance field
+    private static final int ENTRY_OVERHEAD = 96;       // key, map entry and object headers, roughly
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private long hits;                                  // results served from the cache
+    private long fieldHits;                             // searches skipped thanks to a cached distance field
+    private long misses;                                // results that had to be computed
+    private long evictions;                             // entries dropped to stay within the bounds
+
+    public SolutionCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * solves a maze given in the compact text format with the solver's method, the maze is only parsed when neither
+     * its result nor its distance field is cached. Prints like MazeSolver.solve when the solver prints.
+     *
+     * @param solver
+     * @param compactMaze
+     * @param numLives
+     * @return
+     */
+    public String solve(MazeSolver solver, CharSequence compactMaze, int numLives) {
+        return solve(solver, hash(compactMaze), compactMaze.length(), numLives,
+                () -> new Maze(compactMaze.toString()), true);
+    }
+
+    /**
+     * solves an already loaded maze with the solver's method, keyed on its cell codes. The maze stays the caller's:
+     * a distance field cached for it keeps a copy, so later edits of the maze cannot leak into other solves.
+     *
+     * @param solver
+     * @param maze
+     * @param numLives
+     * @return
+     */
+    public String solve(MazeSolver solver, Maze maze, int numLives) {
+        return solve(solver, hash(maze), maze.size(), numLives, () -> maze, false);
+    }
+
+    /**
+     * serves a result from the cache or computes and stores it, the maze is only loaded when it has to be searched
+     *
+     * @param solver
+     * @param hash
+     * @param length
+     * @param numLives
+     * @param load gives the maze when it has to be solved
+     * @param owned whether the loaded maze belongs to the cache, one that does not is copied before it is cached
+     * @return
+     */
+    private String solve(MazeSolver solver, long hash, int length, int numLives, Supplier<Maze> load,
+            boolean owned) {
+        SolveMethod method = solver.getMethod();
+        Key key = new Key(hash, length, numLives, method.ordinal(), solver.getPathFormat().ordinal());
+        SolverMetrics metrics = solver.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        Result result = (Result) lookup(key);
+        if (result != null) {
+            if (metrics != null) {
+                metrics.recordCacheHit(result.found(), System.nanoTime() - start, result.steps, result.mines);
+            }
+            return solver.report(result.text);
+        }
+
+        Maze maze;
+        boolean found;
+        if (MazeSolver.walksBack(method)) {
+            Key fieldKey = new Key(hash, length, FIELD, method.ordinal(), 0);
+            DistanceField field = (DistanceField) lookup(fieldKey);
+            if (field != null) {
+                solver.loadDistanceField(field.distances);
+            } else {
+                Maze loaded = load.get();
+                solver.searchDistances(loaded, method);
+                field = new DistanceField(owned ? loaded : loaded.copy(), solver.distanceField(loaded.size()));
+                store(fieldKey, field, (long) field.distances.length * 5 + 32);
+            }
+            maze = field.maze;
+            found = solver.walkBack(maze, numLives);
+        } else {
+            maze = load.get();
+            found = solver.findPath(maze, numLives, method);
+        }
+        result = found ? new Result(solver.pathText(), solver.pathLength(), solver.minesOnPath(maze)) : Result.NONE;
+        store(key, result, (long) result.text.length() * 2 + 56);
+        if (metrics != null) {
+            solver.recordCacheMiss(found, System.nanoTime() - start, result.mines);
+        }
+        return solver.report(result.text);
+    }
+
+    /**
+     * looks an entry up and counts the outcome
+     *
+     * @param key
+     * @return null on a miss
+     */
+    private synchronized Object lookup(Key key) {
+        Object value = entries.get(key);
+        if (value == null) {
+            if (key.lives != FIELD) {
+                misses++;
+            }
+        } else if (key.lives == FIELD) {
+            fieldHits++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * adds an entry and evicts the least recently used ones until the cache is within its bounds again, an entry that
+     * would not fit on its own is not stored at all
+     *
+     * @param key
+     * @param value
+     * @param size estimated bytes held by the value
+     */
+    private synchronized void store(Key key, Object value, long size) {
+        key.size = size + ENTRY_OVERHEAD;
+        if (key.size > maxBytes) {
+            return;
+        }
+        Object old = entries.put(key, value);
+        if (old != null) {
+            // another thread stored the same content first, the sizes are the same
+            return;
+        }
+        bytes += key.size;
+        Iterator<Key> eldest = entries.keySet().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            Key evicted = eldest.next();
+            eldest.remove();
+            bytes -= evicted.size;
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getFieldHits() {
+        return fieldHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * drops every entry, the counters are kept
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "hits=" + hits + " misses=" + misses + " field hits=" + fieldHits + " evictions=" + evictions
+                + " entries=" + entries.size() + " bytes=" + bytes;
+    }
+
+    /**
+     * 64-bit hash of the raw compact text of a maze (FNV-1a, finished with a murmur style mix)
+     *
+     * @param text
+     * @return
+     */
+    static long hash(CharSequence text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * 64-bit hash of the dimensions and cell codes of a maze
+     *
+     * @param maze
+     * @return
+     */
+    static long hash(Maze maze) {
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ maze.height) * 0x100000001b3L;
+        h = (h ^ maze.width) * 0x100000001b3L;
+        for (int i = 0, n = maze.size(); i < n; i++) {
+            h = (h ^ maze.code(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * content hash and length of a maze plus what was asked of it, also carries the estimated size of its entry
+     */
+    private static final class Key {
+        final long hash;
+        final int length;
+        final int lives;
+        final int method;
+        final int format;
+        long size;
+
+        Key(long hash, int length, int lives, int method, int format) {
+            this.hash = hash;
+            this.length = length;
+            this.lives = lives;
+            this.method = method;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && length == other.length && lives == other.lives && method == other.method
+                    && format == other.format;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((int) (hash ^ (hash >>> 32)) * 31 + lives) * 31 + method * 3 + format;
+        }
+    }
+
+    /**
+     * a path (or NO_PATH) with what the metrics need to know about it
+     */
+    private static final class Result {
+        static final Result NONE = new Result(MazeSolver.NO_PATH, 0, 0);
+
+        final String text;
+        final int steps;
+        final int mines;
+
+        Result(String text, int steps, int mines) {
+            this.text = text;
+            this.steps = steps;
+            this.mines = mines;
+        }
+
+        boolean found() {
+            return this != NONE;
+        }
+    }
+
+    /**
+     * the parsed maze and the BFS distances from its start, shared read only by every solver that replays it
+     */
+    private static final class DistanceField {
+        final Maze maze;
+        final int[] distances;
+
+        DistanceField(Maze maze, int[] distances) {
+            this.maze = maze;
+            this.distances = distances;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package sparkcog.demo;
+
+/**
+ * the ways a MazeSolver can solve a maze, pick one per solver or per call to MazeSolver.solve
+ */
+
+public enum SolveMethod {
+
+    /**
+     * plain BFS that ignores mines followed by the greedy walk back from the end, the original solver
+     */
+    BREADTH_FIRST,
+
+    /**
+     * exact search over (cell, lives left) states, returns the shortest path that never runs out of lives
+     */
+    LIVES_AWARE,
+
+    /**
+     * BFS from the start and the end at once, meeting in the middle. Falls back to LIVES_AWARE when the shortest path
+     * crosses too many mines
+     */
+    BIDIRECTIONAL,
+
+    /**
+     * A* towards the end with the Manhattan distance and a bucket queue. Falls back to LIVES_AWARE when the shortest
+     * path crosses too many mines
+     */
+    A_STAR,
+
+    /**
+     * the BFS of BREADTH_FIRST run 64 cells at a time on bit sets of the rows (see BitParallelSearch), followed by the
+     * same walk back. Gives the path of BREADTH_FIRST wherever that one can be walked
+     */
+    BIT_PARALLEL,
+
+    /**
+     * the BFS of BREADTH_FIRST split level by level over the cores of a fork join pool (see ParallelSearch), followed
+     * by the same walk back. Meant for single huge mazes, below a size threshold it runs the search of BIT_PARALLEL,
+     * which gives the same distances, so the path is that of BIT_PARALLEL at any size
+     */
+    PARALLEL,
+
+    /**
+     * the search of LIVES_AWARE on the maze with dead ends filled and corridors contracted into weighted edges (see
+     * JunctionGraph), the graph is kept by the maze for further solves
+     */
+    JUNCTION,
+
+    /**
+     * BFS that keeps only a visited bit and a 2-bit parent direction per cell and walks the parents back from the end
+     * (see PackedSearch), for mazes too large for the bookkeeping of the others. Falls back to LIVES_AWARE when the
+     * shortest path crosses too many mines
+     */
+    PACKED_BFS
+}
@@ -0,0 +1,69 @@
+package sparkcog.demo;
+
+/**
+ * the JFR events committed while SolverMetrics are on, one per phase of a solve (see SolverMetrics.Phase). They show
+ * up in a flight recording as "Maze Solve Phase" under the Maze category with the method, the maze size and the
+ * nodes expanded, so slow phases can be lined up against GC pauses.
+ *
+ * the events themselves extend jdk.jfr.Event, which is not part of the Java 8 API, so they live apart in src-jfr
+ * (JfrSolverEvents) and are only compiled where jdk.jfr is there. They are looked up by name when this class is
+ * loaded, on a JVM without jdk.jfr or a build without src-jfr AVAILABLE is false and solvers simply skip them.
+ */
+
+final class SolverEvents {
+
+    private static final Recorder RECORDER = load();
+    static final boolean AVAILABLE = RECORDER != null;
+
+    private SolverEvents() {
+    }
+
+    /**
+     * starts timing a phase, only to be called when AVAILABLE
+     *
+     * @param phase
+     * @param method null while parsing
+     * @return
+     */
+    static PhaseEvent begin(SolverMetrics.Phase phase, SolveMethod method) {
+        return RECORDER.begin(phase.name(), method == null ? null : method.name());
+    }
+
+    /**
+     * ends a phase and commits it if a recording wants it
+     *
+     * @param event
+     * @param maze the maze of the phase, may be null
+     * @param nodesExpanded
+     */
+    static void commit(PhaseEvent event, Maze maze, long nodesExpanded) {
+        if (maze != null) {
+            event.commit(maze.height, maze.width, nodesExpanded);
+        } else {
+            event.commit(0, 0, nodesExpanded);
+        }
+    }
+
+    private static Recorder load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("sparkcog.demo.JfrSolverEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * starts the events, implemented by JfrSolverEvents
+     */
+    interface Recorder {
+        PhaseEvent begin(String phase, String method);
+    }
+
+    /**
+     * a phase being timed
+     */
+    interface PhaseEvent {
+        void commit(int height, int width, long nodesExpanded);
+    }
+}
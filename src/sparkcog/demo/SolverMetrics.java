@@ -0,0 +1,269 @@
+package sparkcog.demo;
+
+/**
+ * collects where the time of a run goes. A MazeSolver with metrics set (see MazeSolver.setMetrics) times the phases of
+ * every solve, parsing is timed by whoever loads the mazes through parse. Next to the timings it counts solves,
+ * unsolvable mazes, nodes expanded, the largest queue, path lengths and mines stepped on.
+ *
+ * timings and per solve sizes go into log2 histograms: bucket b holds the values in [2^(b-1), 2^b), which keeps a
+ * histogram at 65 counters no matter how long the run and still gives percentiles to within a factor of 2. Everything
+ * can be dumped as JSON at the end of a run (writeJson).
+ *
+ * while metrics are on every phase is also committed as a JFR event (see SolverEvents), so a flight recording shows
+ * the phases next to GC and safepoint activity. JFR only records them when a recording is running, eg. with
+ * -XX:StartFlightRecording, and they are left out on a JVM without jdk.jfr.
+ *
+ * solves answered by a SolutionCache count as solves too: a result served from the cache adds its SOLVE time, path
+ * length and mines with no nodes expanded and is counted in cacheHits, a result the cache had to compute adds its
+ * SOLVE time and outcome without the phases apart (see SolutionCache.solve).
+ *
+ * one instance can be shared by many solvers on many threads, every counter is atomic.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class SolverMetrics {
+
+    /**
+     * the timed phases of a solve
+     */
+    public enum Phase {
+        PARSE,          // compact text (or binary record) to Maze
+        SEARCH,         // the search itself, for the methods without a walk back this includes rebuilding the path
+        WALK_BACK,      // the walk back over the BFS distances, for the methods that have one (MazeSolver.walksBack)
+        OUTPUT,         // turning the path into text
+        SOLVE           // everything MazeSolver.solve does, search to output
+    }
+
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+    private final Histogram nodesExpanded = new Histogram();
+    private final Histogram pathLength = new Histogram();
+    private final LongAdder solves = new LongAdder();
+    private final LongAdder noPath = new LongAdder();
+    private final LongAdder minesSteppedOn = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final AtomicLong peakQueue = new AtomicLong();
+    final boolean events = SolverEvents.AVAILABLE;
+
+    public SolverMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * loads a maze and records the time it took as the PARSE phase
+     *
+     * @param loader eg. () -> new Maze(line)
+     * @return the maze
+     */
+    public Maze parse(Supplier<Maze> loader) {
+        SolverEvents.PhaseEvent event = events ? SolverEvents.begin(Phase.PARSE, null) : null;
+        long start = System.nanoTime();
+        Maze maze = loader.get();
+        record(Phase.PARSE, System.nanoTime() - start);
+        if (event != null) {
+            SolverEvents.commit(event, maze, 0);
+        }
+        return maze;
+    }
+
+    /**
+     * adds the duration of one phase
+     *
+     * @param phase
+     * @param nanos
+     */
+    public void record(Phase phase, long nanos) {
+        phases[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * adds the outcome of one solve
+     *
+     * @param found whether a path was found
+     * @param expanded cells (or states) taken off the queues
+     * @param queuePeak most entries queued at once
+     * @param steps path length, 0 without a path
+     * @param mines mines stepped on along the path
+     */
+    public void recordSolve(boolean found, long expanded, long queuePeak, int steps, int mines) {
+        solves.increment();
+        nodesExpanded.add(expanded);
+        peakQueue.accumulateAndGet(queuePeak, Math::max);
+        if (found) {
+            pathLength.add(steps);
+            minesSteppedOn.add(mines);
+        } else {
+            noPath.increment();
+        }
+    }
+
+    /**
+     * adds a solve that was served from a SolutionCache, nothing was expanded for it
+     *
+     * @param found whether the cached result is a path
+     * @param nanos time from the lookup to the result
+     * @param steps path length, 0 without a path
+     * @param mines mines stepped on along the path
+     */
+    public void recordCacheHit(boolean found, long nanos, int steps, int mines) {
+        cacheHits.increment();
+        record(Phase.SOLVE, nanos);
+        recordSolve(found, 0, 0, steps, mines);
+    }
+
+    public long getSolves() {
+        return solves.sum();
+    }
+
+    public long getNoPath() {
+        return noPath.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getPeakQueue() {
+        return peakQueue.get();
+    }
+
+    public long getMinesSteppedOn() {
+        return minesSteppedOn.sum();
+    }
+
+    public Histogram getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    public Histogram getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public Histogram getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * writes every counter and histogram as one JSON object, timings are in nanoseconds
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"solves\": " + getSolves() + ",\n");
+        out.write("  \"noPath\": " + getNoPath() + ",\n");
+        out.write("  \"cacheHits\": " + getCacheHits() + ",\n");
+        out.write("  \"minesSteppedOn\": " + getMinesSteppedOn() + ",\n");
+        out.write("  \"peakQueue\": " + getPeakQueue() + ",\n");
+        out.write("  \"nodesExpanded\": ");
+        nodesExpanded.writeJson(out);
+        out.write(",\n  \"pathLength\": ");
+        pathLength.writeJson(out);
+        out.write(",\n  \"phaseNanos\": {");
+        for (Phase phase : Phase.values()) {
+            out.write(phase.ordinal() == 0 ? "\n    \"" : ",\n    \"");
+            out.write(phase.name().toLowerCase());
+            out.write("\": ");
+            phases[phase.ordinal()].writeJson(out);
+        }
+        out.write("\n  }\n}\n");
+        out.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringWriter out = new StringWriter();
+        try {
+            writeJson(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * a log2 histogram of non negative values with count, sum and max
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 65;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void add(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * an upper bound on the given percentile, the top of the bucket it falls in (but never above the max)
+         *
+         * @param percentile between 0 and 100
+         * @return 0 for an empty histogram
+         */
+        public long percentile(double percentile) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank && seen > 0) {
+                    long top = b == 0 ? 0 : b == 64 ? Long.MAX_VALUE : (1L << b) - 1;
+                    return Math.min(top, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        void writeJson(Writer out) throws IOException {
+            long total = getCount();
+            out.write("{\"count\": " + total + ", \"sum\": " + getSum() + ", \"max\": " + getMax()
+                    + ", \"mean\": " + (total == 0 ? 0 : getSum() / total)
+                    + ", \"p50\": " + percentile(50) + ", \"p90\": " + percentile(90)
+                    + ", \"p99\": " + percentile(99) + ", \"buckets\": [");
+            // only the non empty buckets, each as [upper bound, count]
+            boolean first = true;
+            for (int b = 0; b < BUCKETS; b++) {
+                long n = buckets.get(b);
+                if (n != 0) {
+                    out.write(first ? "[" : ", [");
+                    out.write((b == 0 ? 0 : b == 64 ? Long.MAX_VALUE : (1L << b) - 1) + ", " + n + "]");
+                    first = false;
+                }
+            }
+            out.write("]}");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package sparkcog.demo;
+
+/**
+ * the framed protocol spoken between SolverServer and its clients (see LoadClient). Every message is one frame: its
+ * length as an int, then that many bytes. Numbers are big endian, text is ASCII.
+ *
+ *   request:  int length | byte type | long id | byte lives | maze text
+ *   response: int length | byte status | long id | text
+ *
+ * the id is the client's own and comes back unchanged with the response, responses are written as the solves finish
+ * so they can come back in another order than the requests went out. Lives 0 means the server's default. A STATS
+ * request carries no maze and is answered with the server's counters and latency percentiles as JSON.
+ *
+ * a client may send many requests before reading any response (pipelining), the server stops reading from it while a
+ * window of them is unanswered (see SolverServer.setWindow). Once it has sent everything it shuts down its output, the
+ * server answers what it has and then closes the connection.
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+final class SolverProtocol {
+
+    static final int DEFAULT_PORT = 7171;
+    static final int MAX_FRAME = 64 << 20;              // longest frame accepted, a 64 MB maze line
+
+    // request types
+    static final byte SOLVE = 0;
+    static final byte STATS = 1;
+
+    // response statuses
+    static final byte PATH = 0;
+    static final byte NO_PATH = 1;
+    static final byte ERROR = 2;                        // the text is the reason, eg. a MazeFormatException message
+    static final byte STATS_JSON = 3;
+
+    private static final int REQUEST_HEADER = 10;       // type, id and lives
+    private static final int RESPONSE_HEADER = 9;       // status and id
+
+    private SolverProtocol() {
+    }
+
+    /**
+     * a decoded request
+     */
+    static final class Request {
+        final byte type;
+        final long id;
+        final int lives;
+        final String maze;
+
+        Request(byte type, long id, int lives, String maze) {
+            this.type = type;
+            this.id = id;
+            this.lives = lives;
+            this.maze = maze;
+        }
+    }
+
+    /**
+     * a decoded response
+     */
+    static final class Response {
+        final byte status;
+        final long id;
+        final String text;
+
+        Response(byte status, long id, String text) {
+            this.status = status;
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, byte type, long id, int lives, String maze) throws IOException {
+        out.writeInt(REQUEST_HEADER + maze.length());
+        out.writeByte(type);
+        out.writeLong(id);
+        out.writeByte(lives);
+        out.writeBytes(maze);
+    }
+
+    /**
+     * reads the next request
+     *
+     * @param in
+     * @return null at the end of the stream
+     * @throws IOException when the stream ends inside a frame or a frame is malformed
+     */
+    static Request readRequest(DataInputStream in) throws IOException {
+        int length = readLength(in, REQUEST_HEADER);
+        if (length < 0) {
+            return null;
+        }
+        byte type = in.readByte();
+        long id = in.readLong();
+        int lives = in.readUnsignedByte();
+        byte[] maze = new byte[length - REQUEST_HEADER];
+        in.readFully(maze);
+        return new Request(type, id, lives, new String(maze, StandardCharsets.US_ASCII));
+    }
+
+    static void writeResponse(DataOutputStream out, byte status, long id, String text) throws IOException {
+        out.writeInt(RESPONSE_HEADER + text.length());
+        out.writeByte(status);
+        out.writeLong(id);
+        out.writeBytes(text);
+    }
+
+    /**
+     * reads the next response
+     *
+     * @param in
+     * @return null at the end of the stream
+     * @throws IOException when the stream ends inside a frame or a frame is malformed
+     */
+    static Response readResponse(DataInputStream in) throws IOException {
+        int length = readLength(in, RESPONSE_HEADER);
+        if (length < 0) {
+            return null;
+        }
+        byte status = in.readByte();
+        long id = in.readLong();
+        byte[] text = new byte[length - RESPONSE_HEADER];
+        in.readFully(text);
+        return new Response(status, id, new String(text, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * reads a frame length
+     *
+     * @param in
+     * @param header the fixed part every frame of the kind has
+     * @return -1 at the end of the stream
+     * @throws IOException
+     */
+    private static int readLength(DataInputStream in, int header) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return -1;
+        }
+        int length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+        if (length < header || length > MAX_FRAME) {
+            throw new IOException("bad frame length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * whether an exception only says the peer went away
+     *
+     * @param e
+     * @return
+     */
+    static boolean disconnected(IOException e) {
+        return e instanceof EOFException || e instanceof SocketException;
+    }
+}
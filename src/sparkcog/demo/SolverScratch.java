@@ -0,0 +1,225 @@
+package sparkcog.demo;
+
+/**
+ * the scratch memory a solver needs while it searches a maze. One instance is owned by one MazeSolver and reused for
+ * every maze it solves, so the steady state solve path does not allocate anything besides its result.
+ *
+ * the visited sets are generation stamped: a cell counts as visited when its stamp equals the current generation, so
+ * starting a new solve is just a counter increment instead of clearing the arrays. The arrays only grow, and only when
+ * a maze larger than any seen before arrives.
+ *
+ * not thread safe, every thread needs its own solver (and therefore its own scratch).
+ */
+
+import java.util.Arrays;
+
+class SolverScratch {
+
+    final IntQueue queue = new IntQueue(1024);      // BFS queue of row-major cell indices
+    int[] distance = new int[0];                    // distance from the start, valid where seen == generation
+    int[] seen = new int[0];                        // BFS visited stamps
+    int[] marks = new int[0];                       // second set of visited stamps (walkBack, A* closed set)
+    int generation;                                 // stamp of the current solve
+    long expanded;                                  // cells (or states) taken off the queue in the current solve
+
+    // second search direction, only allocated once a bidirectional search runs
+    final IntQueue backQueue = new IntQueue(1024);  // queue of the search running from the end
+    int[] backDistance = new int[0];                // distance to the end, valid where backSeen == generation
+    int[] backSeen = new int[0];                    // visited stamps of the search running from the end
+    long[] parents = new long[0];                   // 2-bit direction each cell was entered from, from the start
+    final BucketQueue buckets = new BucketQueue();  // A* open list keyed on f = g + h
+    long[] backParents = new long[0];               // 2-bit direction each cell leads to, towards the end
+
+    long[] layerSeen = new long[0];                 // visited bits of the layered lives search
+    long[] layerParents = new long[0];              // 2-bit parent directions of the layered lives search
+    int[] edgeParents = new int[0];                 // edge each junction graph state was reached by (JunctionSearch)
+
+    // row bit sets of the bit parallel BFS (see BitParallelSearch), one bit per cell and 64 cells per word
+    long[] rowOpen = new long[0];                   // cells open in each direction, four words per word of cells
+    long[] rowVisited = new long[0];                // cells reached so far
+    long[] rowFront = new long[0];                  // cells of the current level
+    long[] rowNext = new long[0];                   // cells of the next level, collected while expanding
+    int[] frontWords = new int[0];                  // words of the current level that hold cells
+    int[] nextWords = new int[0];                   // words of the next level that hold cells
+    int[] wordCells = new int[0];                   // cell index of bit 0 of every word
+
+    byte[] steps = new byte[64];                    // path directions, in the order they were recorded
+    int stepCount;                                  // number of recorded directions
+    final PathWriter text = new PathWriter();       // reused to build the printed path
+
+    /**
+     * gets the scratch ready for a maze with the given number of cells
+     *
+     * @param size
+     */
+    void prepare(int size) {
+        if (distance.length < size) {
+            // fresh arrays are all zero, which is older than any generation handed out so far
+            distance = new int[size];
+            seen = new int[size];
+            marks = new int[size];
+        }
+        generation++;
+        if (generation == 0) {
+            // the stamps wrapped around, stale stamps could now match so start over from a clean slate
+            Arrays.fill(seen, 0);
+            Arrays.fill(marks, 0);
+            Arrays.fill(backSeen, 0);
+            generation = 1;
+        }
+        queue.clear();
+        backQueue.clear();
+        buckets.peak = 0;
+        expanded = 0;
+        stepCount = 0;
+    }
+
+    /**
+     * gets the 2-bit parent directions ready, they are only read for visited cells so they are never cleared
+     *
+     * @param size
+     */
+    void prepareParents(int size) {
+        int words = PackedBits.wordsForPairs(size);
+        if (parents.length < words) {
+            parents = new long[words];
+        }
+    }
+
+    /**
+     * gets the arrays of a search running in both directions ready, call after prepare
+     *
+     * @param size
+     */
+    void prepareBidirectional(int size) {
+        prepareParents(size);
+        if (backSeen.length < size) {
+            backDistance = new int[size];
+            backSeen = new int[size];
+        }
+        if (backParents.length < parents.length) {
+            backParents = new long[parents.length];
+        }
+    }
+
+    /**
+     * gets the layered visited bits and parent directions ready for the given number of states, the visited bits have
+     * to be cleared but the parents are only ever read for visited states
+     *
+     * @param states
+     */
+    void prepareLayers(long states) {
+        int seenWords = PackedBits.wordsForBits(states);
+        if (layerSeen.length < seenWords) {
+            layerSeen = new long[seenWords];
+        } else {
+            Arrays.fill(layerSeen, 0, seenWords, 0L);
+        }
+        int parentWords = PackedBits.wordsForPairs(states);
+        if (layerParents.length < parentWords) {
+            layerParents = new long[parentWords];
+        }
+    }
+
+    /**
+     * gets the parent edges of the junction graph search ready, they are only read for reached states
+     *
+     * @param states
+     */
+    void prepareEdgeParents(int states) {
+        if (edgeParents.length < states) {
+            edgeParents = new int[states];
+        }
+    }
+
+    /**
+     * gets the row bit sets of the bit parallel BFS ready for the given number of words, the openings are overwritten
+     * by every search and the next level is left empty by the previous one
+     *
+     * @param words
+     */
+    void prepareRows(int words) {
+        if (rowVisited.length < words) {
+            rowOpen = new long[words << 2];
+            rowVisited = new long[words];
+            rowFront = new long[words];
+            rowNext = new long[words];
+            frontWords = new int[words];
+            nextWords = new int[words];
+            wordCells = new int[words];
+        } else {
+            Arrays.fill(rowVisited, 0, words, 0L);
+            Arrays.fill(rowFront, 0, words, 0L);
+        }
+    }
+
+    /**
+     * the BFS distance of a cell, cells that were not reached count as 0
+     *
+     * @param idx
+     * @return
+     */
+    int distanceOf(int idx) {
+        return seen[idx] == generation ? distance[idx] : 0;
+    }
+
+    /**
+     * the most entries any queue of the current solve held at once, the lives aware search queues two ints per state
+     *
+     * @return
+     */
+    int queuePeak() {
+        return Math.max(Math.max(queue.peak(), backQueue.peak()), buckets.peak);
+    }
+
+    /**
+     * copies the BFS distances of the current solve out, cells that were not reached hold 0 (see distanceOf)
+     *
+     * @param size
+     * @return
+     */
+    int[] distanceField(int size) {
+        int[] field = new int[size];
+        for (int i = 0; i < size; i++) {
+            field[i] = distanceOf(i);
+        }
+        return field;
+    }
+
+    /**
+     * starts a new solve whose BFS distances are taken from a field saved by distanceField instead of a search
+     *
+     * @param field
+     */
+    void loadDistanceField(int[] field) {
+        prepare(field.length);
+        System.arraycopy(field, 0, distance, 0, field.length);
+        Arrays.fill(seen, 0, field.length, generation);
+    }
+
+    /**
+     * turns the recorded steps between from (inclusive) and to (exclusive) around
+     *
+     * @param from
+     * @param to
+     */
+    void reverseSteps(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            byte tmp = steps[i];
+            steps[i] = steps[j];
+            steps[j] = tmp;
+        }
+    }
+
+    /**
+     * records one direction of the path
+     *
+     * @param dir a direction ordinal
+     */
+    void addStep(int dir) {
+        if (stepCount == steps.length) {
+            steps = Arrays.copyOf(steps, stepCount << 1);
+        }
+        steps[stepCount++] = (byte) dir;
+    }
+}
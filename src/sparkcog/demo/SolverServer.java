@@ -0,0 +1,501 @@
+package sparkcog.demo;
+
+/**
+ * a long running solver that takes maze lines over a local TCP socket (see SolverProtocol), so callers get a warm JVM
+ * instead of paying for a cold start per run.
+ *
+ * every connection has a reader thread that decodes requests and puts them on one bounded queue shared by all
+ * connections. When the queue is full the reader blocks, it stops reading its socket and the client's writes back up
+ * through TCP until the workers catch up, so a burst never grows the heap past the queue. The worker threads take
+ * requests off the queue in micro batches: a worker waits for one request and then drains whatever else is waiting, up
+ * to the batch size, and solves them one after the other with its own MazeSolver.
+ *
+ * the answers go on an outbox per connection, never straight to the socket, and a writer thread per connection sends
+ * them and flushes whenever its outbox runs dry. Under load that turns many small writes into few large ones, when idle
+ * an answer goes out alone. A client that pipelines requests without reading the answers only stalls its own writer:
+ * once a connection has a window of requests unanswered its reader stops taking more until the client reads, so the
+ * outbox stays bounded and the workers keep serving the other connections.
+ *
+ * the server keeps counters and log2 histograms (see SolverMetrics.Histogram) of the latency of every request, from
+ * the moment it was read to the moment its answer was flushed, of the time spent on the queue and of the batch sizes.
+ * They are the answer to a STATS request and are printed to stderr when the server shuts down.
+ *
+ * usage: SolverServer [--port n] [--threads n] [--queue n] [--batch n] [--window n] [--lives n] [--method name]
+ *                     [--rle]
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SolverServer implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE = 1024;
+    public static final int DEFAULT_BATCH = 32;
+    public static final int DEFAULT_WINDOW = 256;
+
+    private final ServerSocket server;
+    private final BlockingQueue<Job> queue;
+    private final Thread[] workers;
+    private Thread acceptor;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final int numLives;
+    private final SolveMethod method;
+    private PathFormat pathFormat = PathFormat.LIST;
+    private int maxBatch = DEFAULT_BATCH;
+    private int window = DEFAULT_WINDOW;
+    private volatile boolean closed;
+
+    private final SolverMetrics.Histogram latency = new SolverMetrics.Histogram();
+    private final SolverMetrics.Histogram queueWait = new SolverMetrics.Histogram();
+    private final SolverMetrics.Histogram batchSizes = new SolverMetrics.Histogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder blocked = new LongAdder();     // requests a reader had to wait to queue
+
+    /**
+     * a server listening on the loopback interface, it takes connections once started
+     *
+     * @param port 0 for any free port, see getPort
+     * @param threads number of workers
+     * @param queueSize most requests waiting for a worker
+     * @param numLives lives of the requests that do not say
+     * @param method
+     * @throws IOException
+     */
+    public SolverServer(int port, int threads, int queueSize, int numLives, SolveMethod method) throws IOException {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("need at least one worker and room for one request");
+        }
+        this.server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.workers = new Thread[threads];
+        this.numLives = numLives;
+        this.method = method;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = SolverProtocol.DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueSize = DEFAULT_QUEUE;
+        int batch = DEFAULT_BATCH;
+        int window = DEFAULT_WINDOW;
+        int numLives = 3;
+        SolveMethod method = SolveMethod.BREADTH_FIRST;
+        PathFormat format = PathFormat.LIST;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--queue":
+                    queueSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--batch":
+                    batch = Integer.parseInt(args[++i]);
+                    break;
+                case "--window":
+                    window = Integer.parseInt(args[++i]);
+                    break;
+                case "--lives":
+                    numLives = Integer.parseInt(args[++i]);
+                    break;
+                case "--method":
+                    method = SolveMethod.valueOf(args[++i]);
+                    break;
+                case "--rle":
+                    format = PathFormat.RUN_LENGTH;
+                    break;
+                default:
+                    System.out.println("unknown option " + args[i]);
+                    return;
+            }
+        }
+        final SolverServer server = new SolverServer(port, threads, queueSize, numLives, method);
+        server.setPathFormat(format);
+        server.setMaxBatch(batch);
+        server.setWindow(window);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            System.err.print(server.getStats());
+        }));
+        server.start();
+        System.err.println("listening on " + server.server.getInetAddress().getHostAddress() + ":" + server.getPort()
+                + " with " + threads + " workers");
+        // runs until the JVM is stopped, the shutdown hook closes the server
+        server.acceptor.join();
+    }
+
+    /**
+     * picks the format of the paths sent from now on, LIST unless set
+     *
+     * @param pathFormat
+     */
+    public void setPathFormat(PathFormat pathFormat) {
+        this.pathFormat = pathFormat;
+    }
+
+    /**
+     * most requests a worker takes off the queue at once, set before start
+     *
+     * @param maxBatch
+     */
+    public void setMaxBatch(int maxBatch) {
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    /**
+     * most requests of one connection read and not answered yet, its reader waits for the client to take answers
+     * before it reads more. Set before start.
+     *
+     * @param window
+     */
+    public void setWindow(int window) {
+        this.window = Math.max(1, window);
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * starts the workers and accepts connections on a thread of its own
+     */
+    public void start() {
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::work, "solver-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        acceptor = new Thread(this::serve, "solver-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * accepts connections until the server is closed, each gets a reader and a writer thread
+     */
+    private void serve() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread reader = new Thread(() -> read(connection), "solver-reader-" + socket.getPort());
+                reader.setDaemon(true);
+                Thread writer = new Thread(connection::send, "solver-writer-" + socket.getPort());
+                writer.setDaemon(true);
+                writer.start();
+                reader.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * reads the requests of one connection and queues them, blocking while the queue is full or the connection has a
+     * window of requests unanswered
+     *
+     * @param connection
+     */
+    private void read(Connection connection) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.socket.getInputStream(),
+                    1 << 16));
+            SolverProtocol.Request request;
+            while ((request = SolverProtocol.readRequest(in)) != null) {
+                if (!connection.admit()) {
+                    return;
+                }
+                if (request.type == SolverProtocol.STATS) {
+                    connection.answer(SolverProtocol.STATS_JSON, request.id, getStats(), 0);
+                    continue;
+                }
+                Job job = new Job(connection, request, System.nanoTime());
+                if (!queue.offer(job)) {
+                    blocked.increment();
+                    queue.put(job);
+                }
+            }
+        } catch (IOException e) {
+            if (!SolverProtocol.disconnected(e) && !closed) {
+                e.printStackTrace();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connection.endOfRequests();
+        }
+    }
+
+    /**
+     * the loop of a worker: a micro batch off the queue, solved and handed to the writers of the connections
+     */
+    private void work() {
+        MazeSolver solver = new MazeSolver(method);
+        solver.setPathFormat(pathFormat);
+        PathWriter text = new PathWriter();
+        List<Job> batch = new ArrayList<>(maxBatch);
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                batchSizes.add(batch.size());
+                for (Job job : batch) {
+                    queueWait.add(System.nanoTime() - job.arrived);
+                    solve(solver, text, job);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * solves one request and puts its answer on the outbox of its connection
+     *
+     * @param solver
+     * @param text
+     * @param job
+     */
+    private void solve(MazeSolver solver, PathWriter text, Job job) {
+        SolverProtocol.Request request = job.request;
+        byte status;
+        String answer;
+        try {
+            Maze maze = new Maze(request.maze);
+            boolean found = solver.solve(maze, request.lives == 0 ? numLives : request.lives, text);
+            status = found ? SolverProtocol.PATH : SolverProtocol.NO_PATH;
+            answer = text.takeString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);      // a collecting PathWriter never throws
+        } catch (RuntimeException e) {
+            // a malformed maze must not take the worker down, the caller gets the reason instead
+            errors.increment();
+            text.takeString();
+            status = SolverProtocol.ERROR;
+            answer = String.valueOf(e.getMessage());
+        }
+        job.connection.answer(status, request.id, answer, job.arrived);
+    }
+
+    /**
+     * the counters and histograms as JSON, timings are in nanoseconds
+     *
+     * @return
+     */
+    public String getStats() {
+        StringWriter out = new StringWriter();
+        try {
+            writeStats(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private void writeStats(Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"requests\": " + requests.sum() + ",\n");
+        out.write("  \"errors\": " + errors.sum() + ",\n");
+        out.write("  \"blocked\": " + blocked.sum() + ",\n");
+        out.write("  \"queued\": " + queue.size() + ",\n");
+        out.write("  \"connections\": " + connections.size() + ",\n");
+        out.write("  \"latencyNanos\": ");
+        latency.writeJson(out);
+        out.write(",\n  \"queueNanos\": ");
+        queueWait.writeJson(out);
+        out.write(",\n  \"batchSize\": ");
+        batchSizes.writeJson(out);
+        out.write("\n}\n");
+    }
+
+    /**
+     * stops accepting, drops the connections and stops the workers, queued requests are not answered
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        for (Thread worker : workers) {
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * a request waiting for a worker
+     */
+    private static final class Job {
+        final Connection connection;
+        final SolverProtocol.Request request;
+        final long arrived;
+
+        Job(Connection connection, SolverProtocol.Request request, long arrived) {
+            this.connection = connection;
+            this.request = request;
+            this.arrived = arrived;
+        }
+    }
+
+    /**
+     * an answer waiting on the outbox of its connection
+     */
+    private static final class Answer {
+        final byte status;
+        final long id;
+        final String text;
+        final long arrived;                 // when the request was read, 0 for answers that are not timed
+
+        Answer(byte status, long id, String text, long arrived) {
+            this.status = status;
+            this.id = id;
+            this.text = text;
+            this.arrived = arrived;
+        }
+    }
+
+    /**
+     * one client. Workers put answers on its outbox under its lock and its writer thread sends them, it closes once the
+     * client has sent everything and every request has been answered.
+     */
+    private final class Connection {
+        final Socket socket;
+        private final DataOutputStream out;
+        private final ArrayDeque<Answer> outbox = new ArrayDeque<>();
+        private int unanswered;                 // requests read and not sent back yet
+        private boolean endOfRequests;
+        private boolean dropped;                // closed, by the writer or the server
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        /**
+         * counts a request that was just read, waiting first while the window is full
+         *
+         * @return false when the connection was closed meanwhile
+         * @throws InterruptedException
+         */
+        synchronized boolean admit() throws InterruptedException {
+            while (unanswered >= window && !dropped) {
+                wait();
+            }
+            unanswered++;
+            return !dropped;
+        }
+
+        /**
+         * hands an answer to the writer, never blocks on the socket
+         *
+         * @param status
+         * @param id
+         * @param text
+         * @param arrived when the request was read, 0 to leave it out of the latency
+         */
+        synchronized void answer(byte status, long id, String text, long arrived) {
+            outbox.add(new Answer(status, id, text, arrived));
+            notifyAll();
+        }
+
+        synchronized void endOfRequests() {
+            endOfRequests = true;
+            notifyAll();
+        }
+
+        /**
+         * the loop of the writer: sends whatever is on the outbox, flushes when it runs dry and closes the connection
+         * once every request is answered. After a failed write the answers are dropped, the client is gone.
+         */
+        void send() {
+            List<Answer> sending = new ArrayList<>();
+            boolean broken = false;
+            try {
+                while (true) {
+                    synchronized (this) {
+                        while (outbox.isEmpty() && !dropped && !(endOfRequests && unanswered == 0)) {
+                            wait();
+                        }
+                        if (outbox.isEmpty()) {
+                            break;
+                        }
+                        sending.addAll(outbox);
+                        outbox.clear();
+                    }
+                    if (!broken) {
+                        try {
+                            for (Answer answer : sending) {
+                                SolverProtocol.writeResponse(out, answer.status, answer.id, answer.text);
+                            }
+                            out.flush();
+                        } catch (IOException e) {
+                            broken = true;
+                        }
+                    }
+                    long flushed = System.nanoTime();
+                    int timed = 0;
+                    for (Answer answer : sending) {
+                        if (answer.arrived != 0) {
+                            latency.add(flushed - answer.arrived);
+                            timed++;
+                        }
+                    }
+                    requests.add(timed);
+                    synchronized (this) {
+                        unanswered -= sending.size();
+                        notifyAll();
+                    }
+                    sending.clear();
+                }
+            } catch (InterruptedException e) {
+                // closing anyway
+            } finally {
+                close();
+            }
+        }
+
+        synchronized void close() {
+            dropped = true;
+            notifyAll();
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // gone either way
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package sparkcog.demo;
+
+/**
+ * breadth first search confined to one tile of a TiledMaze. Openings that lead out of the tile are not followed, so
+ * the distances are those of paths that stay inside it, which is what the intra tile distances of TileIndex and the
+ * refinement in HierarchicalPlanner need. Cells are local row-major indices into the tile.
+ *
+ * the arrays are sized for the largest tile and reused with generation stamps like SolverScratch. Not thread safe.
+ */
+
+import java.util.Arrays;
+
+final class TileBfs {
+
+    private final int[] queue;
+    private final int[] distance;
+    private final int[] seen;
+    private final byte[] parent;            // direction moved to enter each cell, forward searches only
+    private int generation;
+    private int cols;
+    private int from;
+
+    TileBfs(int tileSize) {
+        int cells = tileSize * tileSize;
+        queue = new int[cells];
+        distance = new int[cells];
+        seen = new int[cells];
+        parent = new byte[cells];
+    }
+
+    /**
+     * searches the tile from one cell, along the openings (forward) or against them (reverse, the distances are then
+     * the distances to the cell)
+     *
+     * @param cells the tile
+     * @param rows
+     * @param cols
+     * @param from local index of the cell to search from
+     * @param reverse
+     */
+    void run(byte[] cells, int rows, int cols, int from, boolean reverse) {
+        this.cols = cols;
+        this.from = from;
+        generation++;
+        if (generation == 0) {
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        seen[from] = generation;
+        distance[from] = 0;
+        while (head < tail) {
+            int idx = queue[head++];
+            int h = idx / cols;
+            int w = idx - h * cols;
+            int code = cells[idx];
+            int next = distance[idx] + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int nh = dir == Cell.DIR_UP ? h - 1 : dir == Cell.DIR_DOWN ? h + 1 : h;
+                int nw = dir == Cell.DIR_LEFT ? w - 1 : dir == Cell.DIR_RIGHT ? w + 1 : w;
+                if (nh < 0 || nh >= rows || nw < 0 || nw >= cols) {
+                    continue;
+                }
+                int neighbor = nh * cols + nw;
+                // forward the cell has to open towards its neighbor, reverse the neighbor back towards the cell
+                boolean open = reverse ? (cells[neighbor] & (1 << Cell.opposite(dir))) != 0 : (code & (1 << dir)) != 0;
+                if (open && seen[neighbor] != generation) {
+                    seen[neighbor] = generation;
+                    distance[neighbor] = next;
+                    parent[neighbor] = (byte) dir;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * the distance of a cell found by the last run
+     *
+     * @param cell
+     * @return -1 if it was not reached
+     */
+    int distance(int cell) {
+        return seen[cell] == generation ? distance[cell] : -1;
+    }
+
+    /**
+     * records the path of the last forward run from its cell to the given one, from the end back (see SolverScratch)
+     *
+     * @param to a cell the run reached
+     * @param out
+     */
+    void walkBack(int to, SolverScratch out) {
+        int idx = to;
+        while (idx != from) {
+            int dir = parent[idx];
+            out.addStep(dir);
+            idx = dir == Cell.DIR_UP ? idx + cols : dir == Cell.DIR_DOWN ? idx - cols
+                    : dir == Cell.DIR_LEFT ? idx + 1 : idx - 1;
+        }
+    }
+}
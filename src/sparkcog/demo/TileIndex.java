@@ -0,0 +1,392 @@
+package sparkcog.demo;
+
+/**
+ * the preprocessed abstract graph of a TiledMaze that HierarchicalPlanner searches (HPA*, Botea, Mueller and
+ * Schaeffer). Every border between two neighboring tiles is scanned for the places where a path can cross it and
+ * each crossing is a node on both sides of the border. Inside a tile a BFS from every node gives its distance to every
+ * other node of the tile, moving only through the tile.
+ *
+ * the paper merges a run of neighboring crossings into one entrance, which assumes the cells along a border are open
+ * to each other. In a maze they rarely are (a corridor that meets the border next to another one is usually walled off
+ * from it), so a merged entrance can cut a tile off from the path altogether. Here every crossing is kept, which makes
+ * the graph exact at the price of a larger index for open mazes, whose borders are crossed almost everywhere.
+ *
+ * the result is written to a file once and memory mapped from there on, so preprocessing a maze is paid for once and
+ * the graph does not have to fit the heap either. The file starts with a header that ties it to the maze file (size,
+ * modification time, dimensions and tile size) so a stale index is rebuilt rather than used:
+ *
+ *   offset  size  field
+ *        0     4  magic, the ASCII bytes "MZTI"
+ *        4     2  format version, currently 1
+ *        6     2  tile size
+ *        8     4  height
+ *       12     4  width
+ *       16     8  size of the maze file
+ *       24     8  last modified time of the maze file, in milliseconds
+ *       32     8  row-major index of the start, -1 if none
+ *       40     8  row-major index of the end, -1 if none
+ *       48  8*t   file offset of the record of every tile, row-major
+ *
+ * a tile record holds the number of nodes on each side (4 chars, in the order of the direction ordinals), the
+ * position of every node along its side (k chars) and the k*k distances from every node to every other one (chars,
+ * 0xFFFF when there is no path inside the tile). Numbers are big endian.
+ *
+ * preprocessing runs the tiles of a tile row in parallel. Reading is not thread safe, it shares a cache of parsed
+ * tile records.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+final class TileIndex implements AutoCloseable {
+
+    static final int MAGIC = 0x4D5A5449;                // "MZTI"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final char UNREACHABLE = 0xFFFF;
+
+    private final TiledMaze maze;
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final MappedRegions regions;
+    private final LinkedHashMap<Long, Nodes> nodes;
+
+    private TileIndex(TiledMaze maze, FileChannel channel, long[] offsets, MappedRegions regions, final int cached) {
+        this.maze = maze;
+        this.channel = channel;
+        this.offsets = offsets;
+        this.regions = regions;
+        this.nodes = new LinkedHashMap<Long, Nodes>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Nodes> eldest) {
+                return size() > cached;
+            }
+        };
+    }
+
+    /**
+     * opens the index of a maze, building it first if the file is missing or belongs to another maze or tile size
+     *
+     * @param maze
+     * @param file
+     * @param cached most parsed tile records kept in the heap
+     * @return
+     * @throws IOException
+     */
+    static TileIndex open(TiledMaze maze, Path file, int cached) throws IOException {
+        if (!matches(maze, file)) {
+            build(maze, file);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            int tiles = maze.tileRows * maze.tileCols;
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + 8 * tiles);
+            while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+                // keep reading until the table is complete
+            }
+            if (head.hasRemaining()) {
+                throw new IOException("truncated tile index " + file);
+            }
+            if (maze.startIndex < 0) {
+                maze.startIndex = head.getLong(32);
+            }
+            if (maze.endIndex < 0) {
+                maze.endIndex = head.getLong(40);
+            }
+            long[] offsets = new long[tiles];
+            for (int t = 0; t < tiles; t++) {
+                offsets[t] = head.getLong(HEADER_SIZE + 8 * t);
+            }
+            MappedRegions regions = new MappedRegions(channel, channel.size(), offsets, tiles,
+                    MappedRegions.MAX_REGION);
+            return new TileIndex(maze, channel, offsets, regions, cached);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * whether the file is an index of this maze file at this tile size
+     *
+     * @param maze
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    private static boolean matches(TiledMaze maze, Path file) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+                // keep reading until the header is complete
+            }
+        }
+        return head.getInt(0) == MAGIC && head.getShort(4) == VERSION && head.getShort(6) == maze.tileSize
+                && head.getInt(8) == maze.height && head.getInt(12) == maze.width
+                && head.getLong(16) == maze.fileSize && head.getLong(24) == maze.modified;
+    }
+
+    /**
+     * preprocesses every tile and writes the index, to a temporary file first that is then moved in place
+     *
+     * @param maze
+     * @param file
+     * @throws IOException
+     */
+    static void build(final TiledMaze maze, Path file) throws IOException {
+        if ((long) maze.tileRows * maze.tileCols > Integer.MAX_VALUE / 8) {
+            throw new IllegalArgumentException("too many tiles, use a larger tile size");
+        }
+        int tiles = maze.tileRows * maze.tileCols;
+        long[] offsets = new long[tiles];
+        // start and end as found in the cells, for mazes whose header could not hold them
+        final AtomicLongArray ends = new AtomicLongArray(new long[] {-1, -1});
+        final boolean findEnds = maze.startIndex < 0 || maze.endIndex < 0;
+        final ThreadLocal<TileBfs> searches = ThreadLocal.withInitial(() -> new TileBfs(maze.tileSize));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = HEADER_SIZE + 8L * tiles;
+            out.position(position);
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out),
+                    1 << 16));
+            for (int tr = 0; tr < maze.tileRows; tr++) {
+                final int row = tr;
+                byte[][] records = IntStream.range(0, maze.tileCols).parallel()
+                        .mapToObj(tc -> record(maze, row, tc, searches.get(), findEnds ? ends : null))
+                        .toArray(byte[][]::new);
+                for (int tc = 0; tc < maze.tileCols; tc++) {
+                    offsets[tr * maze.tileCols + tc] = position;
+                    data.write(records[tc]);
+                    position += records[tc].length;
+                }
+            }
+            data.flush();
+
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + 8 * tiles);
+            head.putInt(MAGIC).putShort(VERSION).putShort((short) maze.tileSize);
+            head.putInt(maze.height).putInt(maze.width).putLong(maze.fileSize).putLong(maze.modified);
+            head.putLong(findEnds ? ends.get(0) : maze.startIndex);
+            head.putLong(findEnds ? ends.get(1) : maze.endIndex);
+            for (long offset : offsets) {
+                head.putLong(offset);
+            }
+            head.flip();
+            long at = 0;
+            while (head.hasRemaining()) {
+                at += out.write(head, at);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * the nodes of one tile and the distances between them
+     *
+     * @param maze
+     * @param tr
+     * @param tc
+     * @param bfs
+     * @param ends where the START and END cells go when found, null to not look for them
+     * @return
+     */
+    private static byte[] record(TiledMaze maze, int tr, int tc, TileBfs bfs, AtomicLongArray ends) {
+        byte[] cells = maze.loadTile(tr, tc);
+        int rows = maze.tileHeight(tr);
+        int cols = maze.tileWidth(tc);
+        int[][] sides = new int[4][];
+        int k = 0;
+        for (int side = 0; side < 4; side++) {
+            sides[side] = entrances(maze, tr, tc, side);
+            k += sides[side].length;
+        }
+        int[] nodeCells = new int[k];
+        ByteBuffer record = ByteBuffer.allocate(8 + 2 * k + 2 * k * k);
+        int i = 0;
+        for (int side = 0; side < 4; side++) {
+            record.putChar((char) sides[side].length);
+        }
+        for (int side = 0; side < 4; side++) {
+            for (int position : sides[side]) {
+                record.putChar((char) position);
+                nodeCells[i++] = cellOf(side, position, rows, cols);
+            }
+        }
+        for (i = 0; i < k; i++) {
+            bfs.run(cells, rows, cols, nodeCells[i], false);
+            for (int j = 0; j < k; j++) {
+                int d = bfs.distance(nodeCells[j]);
+                record.putChar(d < 0 ? UNREACHABLE : (char) d);
+            }
+        }
+        if (ends != null) {
+            for (int idx = 0; idx < cells.length; idx++) {
+                if ((cells[idx] & (Cell.START | Cell.END)) != 0) {
+                    long global = (long) (tr * maze.tileSize + idx / cols) * maze.width + tc * maze.tileSize
+                            + idx % cols;
+                    ends.compareAndSet((cells[idx] & Cell.START) != 0 ? 0 : 1, -1, global);
+                }
+            }
+        }
+        return record.array();
+    }
+
+    /**
+     * the crossings on one side of a tile, as positions along that side. Both tiles of a border find the same ones,
+     * a crossing counts if either of the two cells opens towards the other.
+     *
+     * @param maze
+     * @param tr
+     * @param tc
+     * @param side a direction ordinal
+     * @return
+     */
+    static int[] entrances(TiledMaze maze, int tr, int tc, int side) {
+        int top = tr * maze.tileSize;
+        int left = tc * maze.tileSize;
+        boolean vertical = side == Cell.DIR_LEFT || side == Cell.DIR_RIGHT;
+        int length = vertical ? maze.tileHeight(tr) : maze.tileWidth(tc);
+        // the cells on this side of the border (h, w) and on the other side (h + dh, w + dw)
+        int h = side == Cell.DIR_DOWN ? top + maze.tileHeight(tr) - 1 : top;
+        int w = side == Cell.DIR_RIGHT ? left + maze.tileWidth(tc) - 1 : left;
+        int dh = side == Cell.DIR_UP ? -1 : side == Cell.DIR_DOWN ? 1 : 0;
+        int dw = side == Cell.DIR_LEFT ? -1 : side == Cell.DIR_RIGHT ? 1 : 0;
+        if (h + dh < 0 || h + dh >= maze.height || w + dw < 0 || w + dw >= maze.width) {
+            return new int[0];
+        }
+        int out = 1 << side;
+        int in = 1 << Cell.opposite(side);
+        int[] found = new int[length];
+        int count = 0;
+        for (int p = 0; p < length; p++) {
+            int ch = vertical ? h + p : h;
+            int cw = vertical ? w : w + p;
+            if ((maze.code(ch, cw) & out) != 0 || (maze.code(ch + dh, cw + dw) & in) != 0) {
+                found[count++] = p;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * the local cell of a node at a position along a side of a tile
+     *
+     * @param side
+     * @param position
+     * @param rows
+     * @param cols
+     * @return
+     */
+    static int cellOf(int side, int position, int rows, int cols) {
+        switch (side) {
+            case Cell.DIR_UP:
+                return position;
+            case Cell.DIR_DOWN:
+                return (rows - 1) * cols + position;
+            case Cell.DIR_LEFT:
+                return position * cols;
+            default:
+                return position * cols + cols - 1;
+        }
+    }
+
+    /**
+     * the nodes of a tile, parsed from the mapped record or taken from the cache
+     *
+     * @param tr
+     * @param tc
+     * @return
+     */
+    Nodes nodes(int tr, int tc) {
+        Long key = (long) tr * maze.tileCols + tc;
+        Nodes tile = nodes.get(key);
+        if (tile == null) {
+            tile = new Nodes(tr, tc, regions.view(offsets[tr * maze.tileCols + tc]));
+            nodes.put(key, tile);
+        }
+        return tile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * the nodes of one tile: node i sits on side side(i) at position positions[i], its distances to the other nodes
+     * of the tile are read from the mapping when asked for
+     */
+    final class Nodes {
+        final int tr;
+        final int tc;
+        final int rows;
+        final int cols;
+        final int[] sideStart = new int[5];         // nodes of side s are sideStart[s] up to sideStart[s + 1]
+        final int[] positions;
+        final int[] cells;                          // local cell of every node
+        private final ByteBuffer view;
+        private final int matrix;                   // buffer index of the distances
+
+        Nodes(int tr, int tc, ByteBuffer view) {
+            this.tr = tr;
+            this.tc = tc;
+            this.rows = maze.tileHeight(tr);
+            this.cols = maze.tileWidth(tc);
+            int at = view.position();
+            for (int side = 0; side < 4; side++) {
+                sideStart[side + 1] = sideStart[side] + view.getChar(at + 2 * side);
+            }
+            int k = sideStart[4];
+            positions = new int[k];
+            cells = new int[k];
+            for (int side = 0, i = 0; side < 4; side++) {
+                for (; i < sideStart[side + 1]; i++) {
+                    positions[i] = view.getChar(at + 8 + 2 * i);
+                    cells[i] = cellOf(side, positions[i], rows, cols);
+                }
+            }
+            this.view = view;
+            this.matrix = at + 8 + 2 * k;
+        }
+
+        int count() {
+            return positions.length;
+        }
+
+        int side(int node) {
+            int side = 0;
+            while (node >= sideStart[side + 1]) {
+                side++;
+            }
+            return side;
+        }
+
+        /**
+         * the distance from one node to another moving inside the tile
+         *
+         * @param from
+         * @param to
+         * @return -1 if there is no such path
+         */
+        int distance(int from, int to) {
+            char d = view.getChar(matrix + 2 * (from * positions.length + to));
+            return d == UNREACHABLE ? -1 : d;
+        }
+    }
+}
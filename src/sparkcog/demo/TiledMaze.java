@@ -0,0 +1,246 @@
+package sparkcog.demo;
+
+/**
+ * a maze in the binary format (see BinaryMazeFormat) that is read tile by tile from its file instead of being loaded
+ * as a whole, for mazes that do not fit the heap (or an int index). The grid is cut into square tiles of tileSize
+ * cells a side, the tiles on the last row and column may be smaller. The cells are memory mapped in bands of whole
+ * rows, each under the 2 GB limit of one mapping, and a tile is copied out of the mapping the first time it is asked
+ * for and kept in a bounded LRU cache of tiles after that. The heap holds the cached tiles and nothing that grows with
+ * the maze.
+ *
+ * cells are addressed by row and column, or by a long row-major index. The start and end come from the record header
+ * or, for mazes too large for an int index, from the START and END bits of the cells (see TileIndex, which finds
+ * them while it preprocesses the maze). Only the first record of a file is used.
+ *
+ * the tile cache is not thread safe. code and loadTile read the mapping directly and may be called from any thread.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TiledMaze implements AutoCloseable {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+    public static final int MAX_TILE_SIZE = 255;        // keeps the distances inside a tile below 2^16
+    public static final int DEFAULT_CACHED_TILES = 4096;
+
+    public final int height;
+    public final int width;
+    public final int tileSize;
+    public final int tileRows;
+    public final int tileCols;
+
+    final Path path;
+    final long fileSize;
+    final long modified;                                // last modified time of the file, to tell stale indexes
+    private final FileChannel channel;
+    private final MappedByteBuffer[] bands;             // the cells, rowsPerBand rows per mapping
+    private final int rowsPerBand;
+    private final LinkedHashMap<Long, byte[]> tiles;
+    long startIndex;                                    // row-major, -1 until known
+    long endIndex;
+    private long tileLoads;
+    private long tileHits;
+
+    /**
+     * opens the first maze of a binary file with the default tile size and cache
+     *
+     * @param path
+     * @throws IOException
+     */
+    public TiledMaze(Path path) throws IOException {
+        this(path, DEFAULT_TILE_SIZE, DEFAULT_CACHED_TILES);
+    }
+
+    /**
+     * opens the first maze of a binary file
+     *
+     * @param path
+     * @param tileSize cells along each side of a tile, 8 to MAX_TILE_SIZE
+     * @param cachedTiles most tiles kept in the heap at once
+     * @throws IOException
+     */
+    public TiledMaze(Path path, int tileSize, final int cachedTiles) throws IOException {
+        if (tileSize < 8 || tileSize > MAX_TILE_SIZE) {
+            throw new IllegalArgumentException("tile size must be between 8 and " + MAX_TILE_SIZE);
+        }
+        if (cachedTiles < 1) {
+            throw new IllegalArgumentException("at least one tile has to be cached");
+        }
+        this.path = path;
+        this.tileSize = tileSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            this.modified = Files.getLastModifiedTime(path).toMillis();
+            ByteBuffer header = ByteBuffer.allocate(BinaryMazeFormat.HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading until the header is complete
+            }
+            if (header.hasRemaining() || header.getInt(0) != BinaryMazeFormat.MAGIC
+                    || header.getShort(4) != BinaryMazeFormat.VERSION) {
+                throw new IOException(path + " does not start with a binary maze record");
+            }
+            this.height = header.getInt(8);
+            this.width = header.getInt(12);
+            long cells = (long) height * width;
+            if (height < 1 || width < 1 || BinaryMazeFormat.HEADER_SIZE + cells > fileSize) {
+                throw new IOException("bad or truncated " + height + "x" + width + " maze in " + path);
+            }
+            this.startIndex = header.getInt(16);
+            this.endIndex = header.getInt(20);
+            this.tileRows = (height + tileSize - 1) / tileSize;
+            this.tileCols = (width + tileSize - 1) / tileSize;
+            this.rowsPerBand = (int) Math.max(1, Math.min(height, MappedRegions.MAX_REGION / width));
+            this.bands = new MappedByteBuffer[(height + rowsPerBand - 1) / rowsPerBand];
+            for (int b = 0; b < bands.length; b++) {
+                long rows = Math.min(rowsPerBand, height - (long) b * rowsPerBand);
+                long offset = BinaryMazeFormat.HEADER_SIZE + (long) b * rowsPerBand * width;
+                bands[b] = channel.map(FileChannel.MapMode.READ_ONLY, offset, rows * width);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.tiles = new LinkedHashMap<Long, byte[]>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > cachedTiles;
+            }
+        };
+    }
+
+    /**
+     * number of cells
+     *
+     * @return
+     */
+    public long size() {
+        return (long) height * width;
+    }
+
+    /**
+     * the row-major index of the start, -1 if the maze has none (or it is not known yet, see TileIndex)
+     *
+     * @return
+     */
+    public long getStartIndex() {
+        return startIndex;
+    }
+
+    public long getEndIndex() {
+        return endIndex;
+    }
+
+    /**
+     * the code of one cell, read from the mapping without going through the tile cache
+     *
+     * @param h
+     * @param w
+     * @return
+     */
+    public int code(int h, int w) {
+        return bands[h / rowsPerBand].get((h % rowsPerBand) * width + w);
+    }
+
+    /**
+     * the cells of a tile, row-major with tileWidth(tc) cells per row, from the cache or copied from the mapping
+     *
+     * @param tr
+     * @param tc
+     * @return
+     */
+    public byte[] tile(int tr, int tc) {
+        Long key = (long) tr * tileCols + tc;
+        byte[] cells = tiles.get(key);
+        if (cells != null) {
+            tileHits++;
+            return cells;
+        }
+        cells = loadTile(tr, tc);
+        tileLoads++;
+        tiles.put(key, cells);
+        return cells;
+    }
+
+    /**
+     * copies a tile out of the mapping, bypassing the cache
+     *
+     * @param tr
+     * @param tc
+     * @return
+     */
+    byte[] loadTile(int tr, int tc) {
+        int rows = tileHeight(tr);
+        int cols = tileWidth(tc);
+        byte[] cells = new byte[rows * cols];
+        int h = tr * tileSize;
+        int w = tc * tileSize;
+        ByteBuffer band = null;
+        int bandIndex = -1;
+        for (int r = 0; r < rows; r++, h++) {
+            if (h / rowsPerBand != bandIndex) {
+                bandIndex = h / rowsPerBand;
+                band = bands[bandIndex].duplicate();
+            }
+            band.position((h % rowsPerBand) * width + w);
+            band.get(cells, r * cols, cols);
+        }
+        return cells;
+    }
+
+    /**
+     * number of rows of the tiles in tile row tr
+     *
+     * @param tr
+     * @return
+     */
+    public int tileHeight(int tr) {
+        return Math.min(tileSize, height - tr * tileSize);
+    }
+
+    /**
+     * number of columns of the tiles in tile column tc
+     *
+     * @param tc
+     * @return
+     */
+    public int tileWidth(int tc) {
+        return Math.min(tileSize, width - tc * tileSize);
+    }
+
+    /**
+     * tiles copied from the mapping so far
+     *
+     * @return
+     */
+    public long getTileLoads() {
+        return tileLoads;
+    }
+
+    /**
+     * tiles found in the cache so far
+     *
+     * @return
+     */
+    public long getTileHits() {
+        return tileHits;
+    }
+
+    /**
+     * closes the file, the mappings go away once they are garbage collected
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
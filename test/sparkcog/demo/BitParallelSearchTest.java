@@ -0,0 +1,63 @@
+package sparkcog.demo;
+
+/**
+ * BIT_PARALLEL against BREADTH_FIRST: on every shipped maze the two print the same answer for 0 to 4 lives. On random
+ * mazes (some with one way openings) every cell the queue reached has the same distance in both, the bit parallel
+ * search only adds cells one level past the end, and the answers are the same wherever BREADTH_FIRST gives a path
+ * that can be walked.
+ */
+
+import java.io.IOException;
+
+public class BitParallelSearchTest {
+
+    public static void main(String[] args) throws IOException {
+        MazeSolver queue = new MazeSolver(SolveMethod.BREADTH_FIRST);
+        queue.setPrintPath(false);
+        MazeSolver bits = new MazeSolver(SolveMethod.BIT_PARALLEL);
+        bits.setPrintPath(false);
+        for (String line : TestSupport.shippedMazes()) {
+            Maze maze = new Maze(line);
+            for (int lives = 0; lives <= 4; lives++) {
+                TestSupport.checkEquals(queue.solve(maze, lives), bits.solve(maze, lives), line + ", lives " + lives);
+            }
+        }
+
+        int i = 0;
+        for (Maze maze : TestSupport.randomMazes(17, 2000)) {
+            String what = "random maze " + i++;
+            checkDistances(queue, bits, maze, what);
+            for (int lives = 0; lives <= 4; lives++) {
+                String expected = queue.solve(maze, lives);
+                if (!MazeSolver.NO_PATH.equals(expected) && TestSupport.walk(maze, expected) >= 0) {
+                    TestSupport.checkEquals(expected, bits.solve(maze, lives), what + ", lives " + lives);
+                }
+            }
+        }
+    }
+
+    /**
+     * the distance fields of both searches, unreached cells read as 0 in both
+     *
+     * @param queue
+     * @param bits
+     * @param maze
+     * @param what
+     */
+    static void checkDistances(MazeSolver queue, MazeSolver bits, Maze maze, String what) {
+        int n = maze.size();
+        queue.searchDistances(maze, SolveMethod.BREADTH_FIRST);
+        int[] expected = queue.distanceField(n);
+        bits.searchDistances(maze, SolveMethod.BIT_PARALLEL);
+        int[] actual = bits.distanceField(n);
+        int past = expected[maze.endIndex] + 1;
+        for (int idx = 0; idx < n; idx++) {
+            if (expected[idx] != 0 || idx == maze.startIndex) {
+                TestSupport.checkEquals(expected[idx], actual[idx], what + ", distance of cell " + idx);
+            } else {
+                TestSupport.check(actual[idx] == 0 || actual[idx] == past, what + ", cell " + idx + " at "
+                        + actual[idx] + " was not reached by the queue");
+            }
+        }
+    }
+}
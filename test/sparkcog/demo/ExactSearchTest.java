@@ -0,0 +1,48 @@
+package sparkcog.demo;
+
+/**
+ * every method that finds the shortest survivable path (all but the ones that walk back over BFS distances, see
+ * MazeSolver.walksBack) against the reference search: on random mazes (some with one way openings) and the shipped
+ * ones, for every number of lives from 0 to 4 each finds a path exactly when there is one and it is a shortest one.
+ *
+ * every maze is solved with each number of lives in turn, so all but the first JUNCTION solve run on the junction
+ * graph the maze kept, and half of the mazes are indexed first (see Maze.indexConnectivity) so their solves also go
+ * through what the components say.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExactSearchTest {
+
+    public static void main(String[] args) throws IOException {
+        List<SolveMethod> methods = new ArrayList<>();
+        for (SolveMethod method : SolveMethod.values()) {
+            if (!MazeSolver.walksBack(method)) {
+                methods.add(method);
+            }
+        }
+
+        MazeSolver solver = new MazeSolver();
+        solver.setPrintPath(false);
+        int i = 0;
+        for (Maze maze : TestSupport.randomMazes(20, 1500)) {
+            if (i % 2 == 0) {
+                maze.indexConnectivity();
+            }
+            check(solver, methods, maze, "random maze " + i++);
+        }
+        for (String line : TestSupport.shippedMazes()) {
+            check(solver, methods, new Maze(line), line);
+        }
+    }
+
+    private static void check(MazeSolver solver, List<SolveMethod> methods, Maze maze, String what) {
+        for (SolveMethod method : methods) {
+            for (int lives = 0; lives <= 4; lives++) {
+                TestSupport.checkShortest(maze, lives, solver.solve(maze, lives, method), what + ", " + method);
+            }
+        }
+    }
+}
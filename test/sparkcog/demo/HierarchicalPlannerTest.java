@@ -0,0 +1,66 @@
+package sparkcog.demo;
+
+/**
+ * HierarchicalPlanner against the reference search: on generated mazes of every style without mines (the planner
+ * ignores them), every fourth with one way openings, written to a binary file and planned in tiles of 8 to 19 cells,
+ * the planner finds a path exactly when there is one and it is a shortest one.
+ *
+ * every maze goes to the same file with a later modification time, so the index left behind by the maze before is
+ * stale and has to be rebuilt. Every third maze is planned again with a new planner that reuses its fresh index.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+public class HierarchicalPlannerTest {
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("planner");
+        Path file = dir.resolve("maze.bin");
+        Path index = dir.resolve("maze.bin" + HierarchicalPlanner.INDEX_SUFFIX);
+        try {
+            Random random = new Random(19);
+            MazeGenerator.Style[] styles = MazeGenerator.Style.values();
+            for (int i = 0; i < 300; i++) {
+                MazeGenerator generator = new MazeGenerator(10 + random.nextInt(60), 10 + random.nextInt(60),
+                        random.nextLong());
+                generator.style = styles[i % styles.length];
+                generator.randomEnds = true;
+                Maze maze = generator.generate();
+                if (i % 4 == 3) {
+                    maze = TestSupport.oneWay(maze, random, 0.15);
+                }
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    BinaryMazeFormat.write(maze, out);
+                }
+                Files.setLastModifiedTime(file, FileTime.fromMillis(1000000L * (i + 1)));
+
+                int tileSize = 8 + random.nextInt(12);
+                String what = "maze " + i + " (" + generator.style + ", " + maze.height + "x" + maze.width
+                        + ", tiles of " + tileSize + ")";
+                String path = plan(file, index, tileSize);
+                TestSupport.checkShortest(maze, 1, path, what);
+                if (i % 3 == 0) {
+                    TestSupport.checkEquals(path, plan(file, index, tileSize), what + " on its own index");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(index);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static String plan(Path file, Path index, int tileSize) throws IOException {
+        try (TiledMaze maze = new TiledMaze(file, tileSize, 16);
+             HierarchicalPlanner planner = new HierarchicalPlanner(maze, index, 16)) {
+            PathWriter out = new PathWriter();
+            planner.solve(out, PathFormat.LIST);
+            return out.takeString();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package sparkcog.demo;
+
+/**
+ * the repaired path of an IncrementalSolver against a fresh solve: random mazes (some with one way openings) get
+ * random walls opened and closed, mines put down and taken off, whole cells rewritten and now and then the end moved,
+ * and after every edit the solver's path is checked against the reference search and has the length of a LIVES_AWARE
+ * solve of the edited maze from scratch.
+ */
+
+import java.util.Random;
+
+public class IncrementalSolverTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(16);
+        MazeSolver fresh = new MazeSolver(SolveMethod.LIVES_AWARE);
+        fresh.setPrintPath(false);
+        int i = 0;
+        for (Maze maze : TestSupport.randomMazes(16, 400)) {
+            int lives = 1 + random.nextInt(3);
+            IncrementalSolver solver = new IncrementalSolver(maze, lives);
+            for (int edit = 0; edit < 30; edit++) {
+                String what = "random maze " + i + ", edit " + edit;
+                String result = solver.solve();
+                TestSupport.checkShortest(maze, lives, result, what);
+                String expected = fresh.solve(maze, lives);
+                if (MazeSolver.NO_PATH.equals(expected)) {
+                    TestSupport.checkEquals(expected, result, what);
+                } else {
+                    TestSupport.checkEquals(TestSupport.length(expected), TestSupport.length(result), what);
+                }
+                edit(solver, maze, random);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * one random edit through the solver, the start and the end stay where they are except for the odd move of the end
+     *
+     * @param solver
+     * @param maze
+     * @param random
+     */
+    private static void edit(IncrementalSolver solver, Maze maze, Random random) {
+        int idx = random.nextInt(maze.size());
+        int kept = maze.code(idx) & (Cell.START | Cell.END);
+        switch (random.nextInt(8)) {
+            case 0:
+                solver.setMine(idx, !maze.has(idx, Cell.MINE));
+                break;
+            case 1:
+                solver.setCode(idx, random.nextInt(16) | (random.nextInt(4) == 0 ? Cell.MINE : 0) | kept);
+                break;
+            case 2:
+                if (kept == 0) {
+                    solver.setCode(idx, maze.code(idx) | Cell.END);
+                }
+                break;
+            default:
+                solver.setWall(idx, random.nextInt(4), random.nextBoolean());
+        }
+    }
+}
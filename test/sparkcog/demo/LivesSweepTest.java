@@ -0,0 +1,49 @@
+package sparkcog.demo;
+
+/**
+ * sweepLives against a LIVES_AWARE solve per number of lives: on random mazes (some with one way openings) and the
+ * shipped ones, the path of every number of lives up to 5 is a shortest survivable one of the same length as the
+ * single solve finds, and the fewest lives are those of the reference search.
+ */
+
+import java.io.IOException;
+
+public class LivesSweepTest {
+
+    private static final int MAX_LIVES = 5;
+
+    public static void main(String[] args) throws IOException {
+        MazeSolver sweeper = new MazeSolver(SolveMethod.BREADTH_FIRST);
+        sweeper.setPrintPath(false);
+        MazeSolver single = new MazeSolver(SolveMethod.LIVES_AWARE);
+        single.setPrintPath(false);
+        int i = 0;
+        for (Maze maze : TestSupport.randomMazes(23, 2000)) {
+            check(sweeper, single, maze, "random maze " + i++);
+        }
+        for (String line : TestSupport.shippedMazes()) {
+            check(sweeper, single, new Maze(line), line);
+        }
+    }
+
+    private static void check(MazeSolver sweeper, MazeSolver single, Maze maze, String what) {
+        MazeSolver.LivesSweep sweep = sweeper.sweepLives(maze, MAX_LIVES);
+        TestSupport.checkEquals(MAX_LIVES, sweep.getMaxLives(), what + ", max lives");
+        int minLives = 0;
+        for (int lives = 1; lives <= MAX_LIVES; lives++) {
+            String path = sweep.getPath(lives);
+            TestSupport.checkShortest(maze, lives, path, what + " swept");
+            String expected = single.solve(maze, lives);
+            if (MazeSolver.NO_PATH.equals(expected)) {
+                TestSupport.checkEquals(expected, path, what + ", lives " + lives);
+            } else {
+                TestSupport.checkEquals(TestSupport.length(expected), TestSupport.length(path),
+                        what + ", lives " + lives);
+                if (minLives == 0) {
+                    minLives = lives;
+                }
+            }
+        }
+        TestSupport.checkEquals(minLives, sweep.getMinLives(), what + ", fewest lives");
+    }
+}
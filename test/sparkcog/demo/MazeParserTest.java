@@ -0,0 +1,74 @@
+package sparkcog.demo;
+
+/**
+ * MazeParser on malformed input: too few cells, too many, a character that is not a digit and a line cut short each
+ * fail with a MazeFormatException that points at the line and position of the offending character, also behind good
+ * mazes, blank lines and CRLF line ends. The shipped mazes parse the same from text, a reader and ASCII bytes.
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class MazeParserTest {
+
+    private static final String GOOD = "(1,2)-[18,40]";
+
+    public static void main(String[] args) throws IOException {
+        // too few cells: the ']' at position 13 comes where the fourth cell should
+        checkError("(2,2)-[1,2,3]", 1, 13, "expected ','");
+        // too many: the ',' after the second cell at position 11
+        checkError("(1,2)-[1,2,3]", 1, 11, "more cells");
+        checkError("(1,2)-[1,x]", 1, 10, "expected a digit but found 'x'");
+        checkError("(-1,2)-[1]", 1, 2, "expected a digit but found '-'");
+        // cut short at the end of the input, and at the end of a line with another maze after it
+        checkError("(2,2)-[1,2,3", 1, 13, "the end of the input");
+        checkError("(1,2)-[1,2\n" + GOOD, 1, 11, "expected ']' but found the end of the line");
+        // behind two good mazes and a blank line
+        checkError(GOOD + "\n" + GOOD + "\n\n(1,2)-[1,2,3]\n", 4, 11, "more cells");
+        checkError(GOOD + "\r\n" + GOOD + "\r\n(2,2)-[1,2\r\n", 3, 11, "expected ','");
+        checkError(GOOD + " \n", 1, 14, "the end of the line");
+
+        for (String line : TestSupport.shippedMazes()) {
+            String expected = codes(new Maze(line));
+            TestSupport.checkEquals(expected, codes(new MazeParser(new StringReader(line + "\n")).next()), line);
+            ByteBuffer bytes = ByteBuffer.wrap((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            TestSupport.checkEquals(expected, codes(new MazeParser(bytes).next()), line);
+        }
+    }
+
+    /**
+     * parses every maze of the input, the last one has to fail
+     *
+     * @param input
+     * @param line
+     * @param position
+     * @param message part of the message the failure must have
+     */
+    private static void checkError(String input, long line, long position, String message) {
+        MazeParser parser = new MazeParser(input);
+        try {
+            while (parser.next() != null) {
+                // the good mazes in front
+            }
+        } catch (MazeFormatException e) {
+            String what = input.replace("\n", "\\n").replace("\r", "\\r");
+            TestSupport.checkEquals(line, e.line, what + ", line of " + e.getMessage());
+            TestSupport.checkEquals(position, e.position, what + ", position of " + e.getMessage());
+            TestSupport.check(e.getMessage().contains(message), what + ": " + e.getMessage());
+            return;
+        }
+        throw new AssertionError(input + " was accepted");
+    }
+
+    private static String codes(Maze maze) {
+        StringBuilder codes = new StringBuilder(maze.height + "x" + maze.width + " " + maze.startIndex + "-"
+                + maze.endIndex + ":");
+        for (int idx = 0; idx < maze.size(); idx++) {
+            codes.append(' ').append(maze.code(idx));
+        }
+        return codes.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package sparkcog.demo;
+
+/**
+ * MazeRouter against a plain BFS: on random mazes (some with one way openings) random pairs of cells get a path
+ * exactly when there is one, it can be walked and it is a shortest one.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MazeRouterTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(13);
+        int i = 0;
+        for (Maze maze : TestSupport.randomMazes(13, 600)) {
+            MazeRouter router = new MazeRouter(maze, 1 + random.nextInt(4));
+            for (int q = 0; q < 20; q++) {
+                int from = random.nextInt(maze.size());
+                int to = random.nextInt(maze.size());
+                String what = "maze " + i + ", " + from + " -> " + to;
+                int expected = bfs(maze, from)[to];
+                TestSupport.checkEquals(expected, router.distance(from, to), what);
+                String path = router.route(from, to);
+                if (expected < 0) {
+                    TestSupport.checkEquals(MazeSolver.NO_PATH, path, what);
+                } else {
+                    TestSupport.checkEquals(to, walk(maze, from, path), what + ": walk of " + path);
+                    TestSupport.checkEquals(expected, TestSupport.length(path), what + ": length of " + path);
+                }
+            }
+            i++;
+        }
+    }
+
+    private static int[] bfs(Maze maze, int from) {
+        int[] distance = new int[maze.size()];
+        Arrays.fill(distance, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distance[from] = 0;
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int idx = queue.remove();
+            for (int dir = 0; dir < 4; dir++) {
+                int next = maze.neighbor(idx, dir);
+                if (maze.has(idx, 1 << dir) && distance[next] < 0) {
+                    distance[next] = distance[idx] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * follows a path from a cell through the openings
+     *
+     * @return the cell it ends on, -1 when a step has no opening
+     */
+    private static int walk(Maze maze, int from, String path) {
+        int idx = from;
+        String inner = path.substring(1, path.length() - 1);
+        for (String step : inner.isEmpty() ? new String[0] : inner.split(", ")) {
+            int dir = Arrays.asList(Cell.DIRECTION_NAMES).indexOf(step.replace("'", ""));
+            if (!maze.has(idx, 1 << dir)) {
+                return -1;
+            }
+            idx = maze.neighbor(idx, dir);
+        }
+        return idx;
+    }
+}
@@ -0,0 +1,63 @@
+package sparkcog.demo;
+
+/**
+ * PARALLEL on both sides of its threshold: a solver that searches every maze on the pool and one that never does give
+ * the same distances and the same answers as BIT_PARALLEL, on the shipped mazes, on random ones (some with one way
+ * openings) and on a few larger open mazes.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelSearchTest {
+
+    public static void main(String[] args) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MazeSolver always = solver(SolveMethod.PARALLEL);
+            always.setParallelism(pool, 0);
+            MazeSolver never = solver(SolveMethod.PARALLEL);
+            never.setParallelism(pool, Integer.MAX_VALUE);
+            MazeSolver bits = solver(SolveMethod.BIT_PARALLEL);
+
+            List<Maze> mazes = new ArrayList<>();
+            for (String line : TestSupport.shippedMazes()) {
+                mazes.add(new Maze(line));
+            }
+            mazes.addAll(TestSupport.randomMazes(18, 1000));
+            for (int seed = 0; seed < 4; seed++) {
+                MazeGenerator generator = new MazeGenerator(300, 300, seed);
+                generator.style = MazeGenerator.Style.OPEN;
+                generator.mineDensity = 0.05;
+                generator.randomEnds = true;
+                mazes.add(generator.generate());
+            }
+
+            int i = 0;
+            for (Maze maze : mazes) {
+                String what = "maze " + i++;
+                int n = maze.size();
+                always.searchDistances(maze, SolveMethod.PARALLEL);
+                never.searchDistances(maze, SolveMethod.PARALLEL);
+                TestSupport.check(Arrays.equals(always.distanceField(n), never.distanceField(n)),
+                        what + ": distances differ across the threshold");
+                for (int lives = 0; lives <= 4; lives++) {
+                    String expected = bits.solve(maze, lives);
+                    TestSupport.checkEquals(expected, always.solve(maze, lives), what + " on the pool, lives " + lives);
+                    TestSupport.checkEquals(expected, never.solve(maze, lives), what + " below, lives " + lives);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static MazeSolver solver(SolveMethod method) {
+        MazeSolver solver = new MazeSolver(method);
+        solver.setPrintPath(false);
+        return solver;
+    }
+}
@@ -0,0 +1,184 @@
+package sparkcog.demo;
+
+/**
+ * SolutionCache on the shipped mazes: a full cache evicts the least recently used entry, the bytes held stay within
+ * the bound and an entry too large for it is not stored, and a cached distance field replayed with other lives gives
+ * what a fresh solve gives.
+ *
+ * every solve that goes through the cache reaches the metrics of the solver: the mazes solved twice give twice the
+ * solves, path lengths and mines of a solve without the cache, half of them cache hits, and the cached results are the
+ * ones the solver gives on its own. A maze the caller edits after a cached solve does not change what the cache answers
+ * for its old contents.
+ */
+
+import java.io.IOException;
+import java.util.List;
+
+public class SolutionCacheTest {
+
+    public static void main(String[] args) throws IOException {
+        List<String> lines = TestSupport.shippedMazes();
+        checkEvictionOrder(lines);
+        checkByteBound(lines);
+        for (SolveMethod method : SolveMethod.values()) {
+            if (MazeSolver.walksBack(method)) {
+                checkReplay(lines, method);
+            }
+        }
+        checkMetrics(lines);
+        checkCallerEdits(lines);
+    }
+
+    /**
+     * a cache of two results: the one used least recently goes when a third comes in
+     *
+     * @param lines
+     */
+    private static void checkEvictionOrder(List<String> lines) {
+        MazeSolver solver = solver(SolveMethod.LIVES_AWARE);
+        SolutionCache cache = new SolutionCache(2, 1 << 24);
+        String a = lines.get(0);
+        String b = lines.get(1);
+        String c = lines.get(2);
+        cache.solve(solver, a, 3);
+        cache.solve(solver, b, 3);
+        cache.solve(solver, a, 3);
+        cache.solve(solver, c, 3);
+        TestSupport.checkEquals(2, cache.size(), "entries");
+        TestSupport.checkEquals(1L, cache.getEvictions(), "evictions");
+        // b was used least recently, a is still there
+        checkHit(cache, solver, a, true);
+        checkHit(cache, solver, b, false);
+        // b came back in place of c, which had not been used since
+        checkHit(cache, solver, c, false);
+        checkHit(cache, solver, b, true);
+        TestSupport.checkEquals(3L, cache.getEvictions(), "evictions");
+    }
+
+    /**
+     * a cache bounded by the bytes of two results: the third evicts the first, and a bound below a single result keeps
+     * nothing
+     *
+     * @param lines
+     */
+    private static void checkByteBound(List<String> lines) {
+        MazeSolver solver = solver(SolveMethod.LIVES_AWARE);
+        SolutionCache probe = new SolutionCache(1000, 1 << 24);
+        long[] sizes = new long[3];
+        for (int i = 0; i < sizes.length; i++) {
+            long before = probe.getBytes();
+            probe.solve(solver, lines.get(i), 3);
+            sizes[i] = probe.getBytes() - before;
+        }
+
+        long maxBytes = sizes[1] + sizes[2];
+        SolutionCache cache = new SolutionCache(1000, maxBytes);
+        for (int i = 0; i < sizes.length; i++) {
+            cache.solve(solver, lines.get(i), 3);
+            TestSupport.check(cache.getBytes() <= maxBytes, cache.getBytes() + " bytes held, at most " + maxBytes);
+        }
+        TestSupport.checkEquals(2, cache.size(), "entries within the byte bound");
+        TestSupport.checkEquals(sizes[1] + sizes[2], cache.getBytes(), "bytes within the byte bound");
+        checkHit(cache, solver, lines.get(0), false);
+
+        SolutionCache tiny = new SolutionCache(1000, sizes[0] - 1);
+        String expected = solver.solve(new Maze(lines.get(0)), 3);
+        TestSupport.checkEquals(expected, tiny.solve(solver, lines.get(0), 3), "a result too large to keep");
+        TestSupport.checkEquals(0, tiny.size(), "entries of a result too large to keep");
+        TestSupport.checkEquals(0L, tiny.getBytes(), "bytes of a result too large to keep");
+        TestSupport.checkEquals(0L, tiny.getEvictions(), "evictions for a result too large to keep");
+    }
+
+    /**
+     * a method that walks back over BFS distances, solved with 1 to 4 lives: only the first solve of a maze searches,
+     * the others walk back over its cached distance field
+     *
+     * @param lines
+     * @param method
+     */
+    private static void checkReplay(List<String> lines, SolveMethod method) {
+        MazeSolver plain = solver(method);
+        MazeSolver cached = solver(method);
+        SolutionCache cache = new SolutionCache(1000, 1 << 24);
+        for (String line : lines) {
+            for (int lives = 1; lives <= 4; lives++) {
+                TestSupport.checkEquals(plain.solve(new Maze(line), lives), cache.solve(cached, line, lives),
+                        method + " " + line + ", lives " + lives);
+            }
+        }
+        TestSupport.checkEquals(3L * lines.size(), cache.getFieldHits(), method + " field hits");
+    }
+
+    /**
+     * solves a maze through the cache and checks whether its result came from there
+     *
+     * @param cache
+     * @param solver
+     * @param line
+     * @param hit
+     */
+    private static void checkHit(SolutionCache cache, MazeSolver solver, String line, boolean hit) {
+        long hits = cache.getHits();
+        cache.solve(solver, line, 3);
+        TestSupport.checkEquals(hit, cache.getHits() > hits, (hit ? "missed " : "hit ") + line);
+    }
+
+    private static MazeSolver solver(SolveMethod method) {
+        MazeSolver solver = new MazeSolver(method);
+        solver.setPrintPath(false);
+        return solver;
+    }
+
+    private static void checkMetrics(List<String> lines) {
+        for (SolveMethod method : new SolveMethod[] {SolveMethod.BREADTH_FIRST, SolveMethod.LIVES_AWARE}) {
+            MazeSolver plain = new MazeSolver(method);
+            plain.setPrintPath(false);
+            SolverMetrics expected = new SolverMetrics();
+            plain.setMetrics(expected);
+
+            MazeSolver cached = new MazeSolver(method);
+            cached.setPrintPath(false);
+            SolverMetrics metrics = new SolverMetrics();
+            cached.setMetrics(metrics);
+            SolutionCache cache = new SolutionCache(1000, 1 << 24);
+
+            for (int round = 0; round < 2; round++) {
+                for (String line : lines) {
+                    String result = plain.solve(new Maze(line), 3);
+                    TestSupport.checkEquals(result, cache.solve(cached, line, 3), method + " " + line);
+                }
+            }
+            TestSupport.checkEquals(expected.getSolves(), metrics.getSolves(), method + " solves");
+            TestSupport.checkEquals((long) lines.size(), metrics.getCacheHits(), method + " cache hits");
+            TestSupport.checkEquals(expected.getNoPath(), metrics.getNoPath(), method + " no path");
+            TestSupport.checkEquals(expected.getMinesSteppedOn(), metrics.getMinesSteppedOn(), method + " mines");
+            TestSupport.checkEquals(expected.getPathLength().getSum(), metrics.getPathLength().getSum(),
+                    method + " path lengths");
+            TestSupport.checkEquals(expected.getPhase(SolverMetrics.Phase.SOLVE).getCount(),
+                    metrics.getPhase(SolverMetrics.Phase.SOLVE).getCount(), method + " timed solves");
+        }
+    }
+
+    /**
+     * solves each maze through the cache, walls its end in on that same object, then asks the cache about a fresh maze
+     * of the original text
+     *
+     * @param lines
+     */
+    private static void checkCallerEdits(List<String> lines) {
+        MazeSolver solver = new MazeSolver(SolveMethod.BREADTH_FIRST);
+        solver.setPrintPath(false);
+        for (String line : lines) {
+            SolutionCache cache = new SolutionCache(1000, 1 << 24);
+            Maze maze = new Maze(line);
+            String expected = solver.solve(new Maze(line), 2);
+            TestSupport.checkEquals(expected, cache.solve(solver, maze, 2), line);
+            for (int dir = 0; dir < 4; dir++) {
+                maze.setWall(maze.endIndex, dir, false);
+            }
+            TestSupport.checkEquals(expected, cache.solve(solver, new Maze(line), 2), line + " after an edit");
+            TestSupport.checkEquals(solver.solve(new Maze(line), 3), cache.solve(solver, new Maze(line), 3),
+                    line + " with other lives after an edit");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package sparkcog.demo;
+
+/**
+ * a SolverServer on a free port: pipelined solves of the shipped mazes come back with their ids and the answers of a
+ * MazeSolver, a STATS request comes back as JSON and a malformed maze as an ERROR. A client that pipelines large
+ * answers and never reads them does not hold up another connection.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SolverServerTest {
+
+    private static final int LIVES = 3;
+    private static final int ROUNDS = 20;
+    private static final int CORRIDOR = 5000;
+    private static final long STATS_ID = -1;
+    private static final long MALFORMED_ID = -2;
+
+    public static void main(String[] args) throws Exception {
+        List<String> lines = TestSupport.shippedMazes();
+        try (SolverServer server = new SolverServer(0, 2, 16, LIVES, SolveMethod.BREADTH_FIRST)) {
+            server.setMaxBatch(4);
+            server.setWindow(8);
+            server.start();
+            checkPipelined(server.getPort(), lines);
+            checkStalledClient(server.getPort(), lines.get(0));
+        }
+    }
+
+    /**
+     * sends every request before reading an answer, from a thread of its own so neither side waits on the other
+     *
+     * @param port
+     * @param lines
+     * @throws Exception
+     */
+    private static void checkPipelined(int port, List<String> lines) throws Exception {
+        MazeSolver solver = new MazeSolver(SolveMethod.BREADTH_FIRST);
+        solver.setPrintPath(false);
+        Map<Long, String> expected = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            expected.put((long) i, solver.solve(new Maze(lines.get(i)), LIVES));
+        }
+
+        try (Socket socket = connect(port)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Thread sender = new Thread(() -> {
+                try {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < lines.size(); i++) {
+                            SolverProtocol.writeRequest(out, SolverProtocol.SOLVE, round * 1000L + i, 0,
+                                    lines.get(i));
+                        }
+                    }
+                    SolverProtocol.writeRequest(out, SolverProtocol.STATS, STATS_ID, 0, "");
+                    SolverProtocol.writeRequest(out, SolverProtocol.SOLVE, MALFORMED_ID, 0, "(2,2)-[1,2,3");
+                    out.flush();
+                    socket.shutdownOutput();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            sender.start();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            int answers = 0;
+            boolean stats = false;
+            boolean malformed = false;
+            SolverProtocol.Response response;
+            while ((response = SolverProtocol.readResponse(in)) != null) {
+                answers++;
+                if (response.id == STATS_ID) {
+                    TestSupport.checkEquals(SolverProtocol.STATS_JSON, response.status, "status of STATS");
+                    TestSupport.check(response.text.contains("\"latencyNanos\""), "STATS without latencies: "
+                            + response.text);
+                    stats = true;
+                } else if (response.id == MALFORMED_ID) {
+                    TestSupport.checkEquals(SolverProtocol.ERROR, response.status, "status of a malformed maze");
+                    TestSupport.check(!response.text.isEmpty(), "an ERROR without a reason");
+                    malformed = true;
+                } else {
+                    String what = "request " + response.id;
+                    String path = expected.get(response.id % 1000);
+                    TestSupport.check(path != null, what + " was never sent");
+                    boolean found = !MazeSolver.NO_PATH.equals(path);
+                    TestSupport.checkEquals(found ? SolverProtocol.PATH : SolverProtocol.NO_PATH, response.status,
+                            what + ", status");
+                    if (found) {
+                        TestSupport.checkEquals(path, response.text, what);
+                    }
+                }
+            }
+            sender.join();
+            TestSupport.checkEquals(ROUNDS * lines.size() + 2, answers, "answers");
+            TestSupport.check(stats && malformed, "STATS or the malformed maze went unanswered");
+        }
+    }
+
+    /**
+     * one connection sends far more than the socket buffers hold in answers and never reads, then another one asks
+     * for a single maze
+     *
+     * @param port
+     * @param line
+     * @throws Exception
+     */
+    private static void checkStalledClient(int port, String line) throws Exception {
+        // a corridor from one end to the other, the answer is three times as long as the request
+        StringBuilder corridor = new StringBuilder("(1," + CORRIDOR + ")-[" + (Cell.START | Cell.RIGHT));
+        for (int i = 2; i < CORRIDOR; i++) {
+            corridor.append(',').append(Cell.LEFT | Cell.RIGHT);
+        }
+        String large = corridor.append(',').append(Cell.LEFT | Cell.END).append(']').toString();
+
+        Socket stalled = new Socket();
+        // a small window of its own, so the answers fill up the socket long before the requests run out
+        stalled.setReceiveBufferSize(4096);
+        stalled.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        try (Socket closing = stalled; Socket other = connect(port)) {
+            DataOutputStream stalledOut = new DataOutputStream(new BufferedOutputStream(stalled.getOutputStream()));
+            Thread sender = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        SolverProtocol.writeRequest(stalledOut, SolverProtocol.SOLVE, i, 0, large);
+                    }
+                    stalledOut.flush();
+                } catch (IOException e) {
+                    // the server stopped reading and the socket was closed at the end of the test
+                }
+            });
+            sender.setDaemon(true);
+            sender.start();
+            // give the workers time to answer the stalled connection until its socket is full
+            Thread.sleep(2000);
+
+            MazeSolver solver = new MazeSolver(SolveMethod.BREADTH_FIRST);
+            solver.setPrintPath(false);
+            other.setSoTimeout(30000);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(other.getOutputStream()));
+            SolverProtocol.writeRequest(out, SolverProtocol.SOLVE, 7, 0, line);
+            out.flush();
+            SolverProtocol.Response response = SolverProtocol.readResponse(new DataInputStream(other.getInputStream()));
+            TestSupport.check(response != null, "no answer next to a stalled connection");
+            TestSupport.checkEquals(7L, response.id, "id next to a stalled connection");
+            TestSupport.checkEquals(solver.solve(new Maze(line), LIVES), response.text,
+                    "answer next to a stalled connection");
+        }
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+}
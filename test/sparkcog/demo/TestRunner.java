@@ -0,0 +1,52 @@
+package sparkcog.demo;
+
+/**
+ * runs every *Test class found in a directory of compiled tests (see ant test). A test is a class with a main method
+ * that throws when a check fails, the runner reports each one and exits with 1 when any of them failed.
+ *
+ * usage: TestRunner <directory of compiled tests> [name filter]
+ */
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+public final class TestRunner {
+
+    private TestRunner() {
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        String filter = args.length > 1 ? args[1] : "";
+        File dir = new File(args[0], "sparkcog/demo");
+        String[] files = dir.list((d, name) -> name.endsWith("Test.class") && name.indexOf('$') < 0);
+        if (files == null) {
+            System.out.println("no tests in " + dir);
+            System.exit(1);
+        }
+        Arrays.sort(files);
+        int failed = 0;
+        int run = 0;
+        for (String file : files) {
+            String name = file.substring(0, file.length() - ".class".length());
+            if (!name.contains(filter)) {
+                continue;
+            }
+            run++;
+            long start = System.nanoTime();
+            try {
+                Class.forName("sparkcog.demo." + name).getMethod("main", String[].class)
+                        .invoke(null, (Object) new String[0]);
+                System.out.println("ok     " + name + " (" + (System.nanoTime() - start) / 1000000 + " ms)");
+            } catch (InvocationTargetException e) {
+                failed++;
+                System.out.println("FAILED " + name + ": " + e.getCause());
+                e.getCause().printStackTrace(System.out);
+            }
+        }
+        System.out.println(run + " tests, " + failed + " failed");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package sparkcog.demo;
+
+/**
+ * what the tests share: seeded random mazes (symmetric ones from MazeGenerator and ones with one way openings, like a
+ * hand written maze file can have), a reference search the solvers are checked against and a check that a printed
+ * path really walks through the maze.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+final class TestSupport {
+
+    static final String SHIPPED_MAZES = "mazes.txt";
+
+    private TestSupport() {
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static void checkEquals(Object expected, Object actual, String message) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * the mazes of the file that comes with the project, the tests run from the project directory
+     *
+     * @return
+     * @throws IOException
+     */
+    static List<String> shippedMazes() throws IOException {
+        List<String> mazes = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(SHIPPED_MAZES))) {
+            if (!line.isEmpty()) {
+                mazes.add(line);
+            }
+        }
+        return mazes;
+    }
+
+    /**
+     * small random mazes of every style, with and without mines, every fourth one with one way openings
+     *
+     * @param seed
+     * @param count
+     * @return
+     */
+    static List<Maze> randomMazes(long seed, int count) {
+        Random random = new Random(seed);
+        List<Maze> mazes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Maze maze = generated(random);
+            mazes.add(i % 4 == 3 ? oneWay(maze, random, 0.15) : maze);
+        }
+        return mazes;
+    }
+
+    /**
+     * a generated maze of random size, style and mine density with random ends
+     *
+     * @param random
+     * @return
+     */
+    static Maze generated(Random random) {
+        MazeGenerator generator = new MazeGenerator(1 + random.nextInt(24), 2 + random.nextInt(24),
+                random.nextLong());
+        generator.style = MazeGenerator.Style.values()[random.nextInt(MazeGenerator.Style.values().length)];
+        generator.mineDensity = new double[] {0, 0.05, 0.2}[random.nextInt(3)];
+        generator.randomEnds = true;
+        return generator.generate();
+    }
+
+    /**
+     * a copy of a maze where some openings were taken off one side only, so the neighbor can still come in but the
+     * cell can not go back
+     *
+     * @param maze
+     * @param random
+     * @param chance of every opening to be taken off
+     * @return
+     */
+    static Maze oneWay(Maze maze, Random random, double chance) {
+        byte[] cells = new byte[maze.size()];
+        for (int idx = 0; idx < cells.length; idx++) {
+            int code = maze.code(idx);
+            for (int dir = 0; dir < 4; dir++) {
+                if (random.nextDouble() < chance) {
+                    code &= ~(1 << dir);
+                }
+            }
+            cells[idx] = (byte) code;
+        }
+        return new Maze(maze.height, maze.width, cells);
+    }
+
+    /**
+     * the length of the shortest path that steps on fewer mines than lives, by a BFS over every (cell, mines) state
+     * without any of the pruning the solvers do
+     *
+     * @param maze
+     * @param numLives
+     * @return -1 when there is none
+     */
+    static int shortest(Maze maze, int numLives) {
+        int n = maze.size();
+        if (maze.startIndex < 0 || maze.endIndex < 0 || numLives < 1) {
+            return -1;
+        }
+        if (maze.startIndex == maze.endIndex) {
+            return 0;
+        }
+        int[] distance = new int[n * numLives];
+        Arrays.fill(distance, -1);
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        distance[maze.startIndex] = 0;
+        queue.add(new int[] {maze.startIndex, 0});
+        while (!queue.isEmpty()) {
+            int[] state = queue.remove();
+            int code = maze.code(state[0]);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((code & (1 << dir)) == 0) {
+                    continue;
+                }
+                int next = maze.neighbor(state[0], dir);
+                int mines = state[1] + (maze.has(next, Cell.MINE) ? 1 : 0);
+                if (mines >= numLives || distance[mines * n + next] >= 0) {
+                    continue;
+                }
+                distance[mines * n + next] = distance[state[1] * n + state[0]] + 1;
+                if (next == maze.endIndex) {
+                    return distance[mines * n + next];
+                }
+                queue.add(new int[] {next, mines});
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * follows a path in the list format from the start through the openings of the maze
+     *
+     * @param maze
+     * @param path
+     * @return the mines stepped on, -1 when a step has no opening or the path does not end on the end
+     */
+    static int walk(Maze maze, String path) {
+        int idx = maze.startIndex;
+        int mines = 0;
+        for (String step : steps(path)) {
+            int dir = Arrays.asList(Cell.DIRECTION_NAMES).indexOf(step);
+            if (dir < 0 || !maze.has(idx, 1 << dir)) {
+                return -1;
+            }
+            idx = maze.neighbor(idx, dir);
+            if (maze.has(idx, Cell.MINE)) {
+                mines++;
+            }
+        }
+        return idx == maze.endIndex ? mines : -1;
+    }
+
+    /**
+     * the number of steps of a path in the list format
+     *
+     * @param path
+     * @return
+     */
+    static int length(String path) {
+        return steps(path).size();
+    }
+
+    private static List<String> steps(String path) {
+        check(path.startsWith("[") && path.endsWith("]"), "not a path: " + path);
+        List<String> steps = new ArrayList<>();
+        String inner = path.substring(1, path.length() - 1);
+        if (!inner.isEmpty()) {
+            for (String step : inner.split(", ")) {
+                steps.add(step.replace("'", ""));
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * checks the result of an exact solve against the reference search: "no path found" exactly when there is none,
+     * otherwise a path that can be walked, steps on fewer mines than lives and is as short as the reference
+     *
+     * @param maze
+     * @param numLives
+     * @param result
+     * @param what names the maze and method in the failure message
+     */
+    static void checkShortest(Maze maze, int numLives, String result, String what) {
+        int expected = shortest(maze, numLives);
+        if (expected < 0) {
+            checkEquals(MazeSolver.NO_PATH, result, what + ", lives " + numLives);
+            return;
+        }
+        check(!MazeSolver.NO_PATH.equals(result), what + ", lives " + numLives + ": missed a path of " + expected);
+        int mines = walk(maze, result);
+        check(mines >= 0, what + ", lives " + numLives + ": can not walk " + result);
+        check(mines < numLives, what + ", lives " + numLives + ": steps on " + mines + " mines");
+        checkEquals(expected, length(result), what + ", lives " + numLives + ": length of " + result);
+    }
+}